@@ -0,0 +1,174 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Gives the benchmarks access to DictionaryTree and CLI.
+ * Those classes live in the default package, which cannot be imported
+ * from a named package (and JMH refuses benchmarks in the default package),
+ * so their package-private methods are bound once to static final method
+ * handles which the JIT inlines like ordinary calls.
+ */
+final class Dictionary {
+
+    private static final MethodHandle NEW;
+    private static final MethodHandle INSERT;
+    private static final MethodHandle CONTAINS;
+    private static final MethodHandle PREDICT;
+    private static final MethodHandle PREDICT_N;
+    private static final MethodHandle ALL_WORDS;
+    private static final MethodHandle SIZE;
+    private static final MethodHandle HEIGHT;
+    private static final MethodHandle NUM_LEAVES;
+    private static final MethodHandle LOAD_WORDS;
+
+    static {
+        try {
+            Class<?> tree = Class.forName("DictionaryTree");
+            Class<?> cli = Class.forName("CLI");
+            NEW = handle(tree.getDeclaredConstructor(), MethodType.methodType(Object.class));
+            INSERT = handle(tree.getDeclaredMethod("insert", CharSequence.class),
+                    MethodType.methodType(void.class, Object.class, String.class));
+            CONTAINS = handle(tree.getDeclaredMethod("contains", CharSequence.class),
+                    MethodType.methodType(boolean.class, Object.class, String.class));
+            PREDICT = handle(tree.getDeclaredMethod("predict", String.class),
+                    MethodType.methodType(Optional.class, Object.class, String.class));
+            PREDICT_N = handle(tree.getDeclaredMethod("predict", String.class, int.class),
+                    MethodType.methodType(List.class, Object.class, String.class, int.class));
+            ALL_WORDS = handle(tree.getDeclaredMethod("allWords"),
+                    MethodType.methodType(List.class, Object.class));
+            SIZE = handle(tree.getDeclaredMethod("size"), MethodType.methodType(int.class, Object.class));
+            HEIGHT = handle(tree.getDeclaredMethod("height"), MethodType.methodType(int.class, Object.class));
+            NUM_LEAVES = handle(tree.getDeclaredMethod("numLeaves"), MethodType.methodType(int.class, Object.class));
+            LOAD_WORDS = handle(cli.getDeclaredMethod("loadWords", File.class),
+                    MethodType.methodType(Object.class, File.class));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object tree;
+
+    private Dictionary(Object tree) {
+        this.tree = tree;
+    }
+
+    private static MethodHandle handle(AccessibleObject member, MethodType type) throws IllegalAccessException {
+        member.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = member instanceof Method
+                ? lookup.unreflect((Method) member)
+                : lookup.unreflectConstructor((Constructor<?>) member);
+        return handle.asType(type);
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException(t);
+    }
+
+    static Dictionary create() {
+        try {
+            return new Dictionary((Object) NEW.invokeExact());
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Dictionary loadWords(File f) {
+        try {
+            return new Dictionary((Object) LOAD_WORDS.invokeExact(f));
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    void insert(String word) {
+        try {
+            INSERT.invokeExact(tree, word);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    boolean contains(String word) {
+        try {
+            return (boolean) CONTAINS.invokeExact(tree, word);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    Optional<?> predict(String prefix) {
+        try {
+            return (Optional<?>) PREDICT.invokeExact(tree, prefix);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    List<?> predict(String prefix, int n) {
+        try {
+            return (List<?>) PREDICT_N.invokeExact(tree, prefix, n);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    List<?> allWords() {
+        try {
+            return (List<?>) ALL_WORDS.invokeExact(tree);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    int size() {
+        try {
+            return (int) SIZE.invokeExact(tree);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    int height() {
+        try {
+            return (int) HEIGHT.invokeExact(tree);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    int numLeaves() {
+        try {
+            return (int) NUM_LEAVES.invokeExact(tree);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+}
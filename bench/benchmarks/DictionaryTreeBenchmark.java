@@ -0,0 +1,171 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for DictionaryTree against the real word-popularity.txt.
+ * The file is looked up in the working directory unless the
+ * "words" system property points somewhere else.
+ * Run with "-prof gc" (as run-benchmarks.sh does) to see allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DictionaryTreeBenchmark {
+
+    private static final File WORDS = new File(System.getProperty("words", "word-popularity.txt"));
+
+    private List<String> words;
+    private String[] misses;
+    private Dictionary dictionary;
+    private int next;
+
+    /**
+     * The distinct prefixes of a given length found in the dictionary,
+     * kept in a separate state so only the predict benchmarks are
+     * repeated for every prefix length.
+     */
+    @State(Scope.Thread)
+    public static class Prefixes {
+
+        @Param({"1", "2", "3", "4", "5", "6"})
+        public int prefixLength;
+
+        @Param({"25"})
+        public int n;
+
+        private String[] prefixes;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void collect() throws IOException {
+            Set<String> distinct = new LinkedHashSet<>();
+            for (String word : Files.readAllLines(WORDS.toPath())) {
+                if (word.length() >= prefixLength) {
+                    distinct.add(word.substring(0, prefixLength));
+                }
+            }
+            prefixes = distinct.toArray(new String[0]);
+        }
+
+        String next() {
+            if (++next >= prefixes.length) {
+                next = 0;
+            }
+            return prefixes[next];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        words = Files.readAllLines(WORDS.toPath());
+        dictionary = Dictionary.create();
+        for (String word : words) {
+            dictionary.insert(word);
+        }
+
+        List<String> absent = new ArrayList<>();
+        for (String word : words) {
+            if (!dictionary.contains(word + "q")) {
+                absent.add(word + "q");
+            }
+        }
+        misses = absent.toArray(new String[0]);
+    }
+
+    private int next(int bound) {
+        if (++next >= bound) {
+            next = 0;
+        }
+        return next;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public Dictionary insertAll() {
+        Dictionary fresh = Dictionary.create();
+        for (String word : words) {
+            fresh.insert(word);
+        }
+        return fresh;
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        return dictionary.contains(words.get(next(words.size())));
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return dictionary.contains(misses[next(misses.length)]);
+    }
+
+    @Benchmark
+    public Optional<?> predictPrefix(Prefixes prefixes) {
+        return dictionary.predict(prefixes.next());
+    }
+
+    @Benchmark
+    public List<?> predictPrefixN(Prefixes prefixes) {
+        return dictionary.predict(prefixes.next(), prefixes.n);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<?> allWords() {
+        return dictionary.allWords();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int height() {
+        return dictionary.height();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int numLeaves() {
+        return dictionary.numLeaves();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public Dictionary loadWords() {
+        return Dictionary.loadWords(WORDS);
+    }
+
+}
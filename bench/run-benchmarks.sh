@@ -0,0 +1,40 @@
+#!/bin/bash
+
+set -e
+
+if [ $# -lt 2 ]; then
+    echo "Usage: ./run-benchmarks.sh [SOURCE DIRECTORY] [BENCHMARK DIRECTORY] [JMH OPTIONS...]"
+    echo "Expects jmh-core.jar, jmh-generator-annprocess.jar, jopt-simple.jar"
+    echo "and commons-math3.jar in the current directory."
+    exit 1
+fi
+
+sourceDirectory=$1
+benchmarkDirectory=$2
+shift 2
+
+buildDirectory=$(mktemp -d)
+jmhClasspath="jmh-core.jar:jmh-generator-annprocess.jar:jopt-simple.jar:commons-math3.jar"
+
+function banner() {
+    echo "===== $1 ====="
+}
+
+function compileSource() {
+    banner "compiling source files"
+    (set -x ; find "$sourceDirectory" -name '*.java' ! -name '*Tests.java' | xargs javac -d "$buildDirectory")
+}
+
+function compileBenchmarks() {
+    banner "compiling benchmarks"
+    (set -x ; find "$benchmarkDirectory" -name '*.java' | xargs javac -cp "$jmhClasspath:$buildDirectory" -d "$buildDirectory")
+}
+
+function runBenchmarks() {
+    banner "running benchmarks"
+    (set -x ; java -cp "$jmhClasspath:$buildDirectory" org.openjdk.jmh.Main -prof gc "$@")
+}
+
+compileSource
+compileBenchmarks
+runBenchmarks "$@"
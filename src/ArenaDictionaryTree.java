@@ -0,0 +1,491 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A dictionary whose nodes live in a handful of primitive arrays instead
+ * of being objects of their own, so that however many words it holds the
+ * garbage collector only ever sees a fixed number of arrays.
+ *
+ * A node is an index into the per-node arrays, which hold its parent, the
+ * letter leading to it, whether a word ends there and with what
+ * popularity, the best (lowest) popularity of any word below it, and
+ * where its children are. The children of a node are a block of the edge
+ * arena: their letters, sorted so they can be binary searched, and their
+ * node indexes. Blocks hold a power of two edges. A block that fills up
+ * is moved to one twice its size, and freed blocks and nodes are reused.
+ *
+ * Predictions are found best first: a heap of node indexes holds the
+ * subtrees still to be explored, ordered by their best popularity and
+ * then their prefix, so only the branches leading to the words returned
+ * are opened.
+ * Like DictionaryTree, it is not safe to change from more than one thread.
+ */
+public class ArenaDictionaryTree {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int NO_WORDS = Integer.MAX_VALUE;
+
+    /**
+     * The number of block sizes, enough for a block holding every char
+     */
+    private static final int BLOCK_CLASSES = Character.SIZE + 1;
+
+    private int[] parent = new int[16];
+    private char[] letter = new char[16];
+    private boolean[] endOfWord = new boolean[16];
+    private int[] popularity = new int[16];
+    private int[] best = new int[16];
+    private int[] edgeStart = new int[16];
+    private int[] edgeCount = new int[16];
+    private byte[] edgeClass = new byte[16];
+    private int nodes;
+    private int freeNodes = NONE;
+    private int numWords;
+
+    private char[] edgeLetters = new char[64];
+    private int[] edgeTargets = new int[64];
+    private int edges;
+    private final int[] freeBlocks = new int[BLOCK_CLASSES];
+
+    private int overallPopularity = 1;
+
+    ArenaDictionaryTree() {
+        Arrays.fill(freeBlocks, NONE);
+        newNode(NONE, '\0');
+    }
+
+    /**
+     * Copies a dictionary into a new arena, keeping each word's popularity.
+     *
+     * @param tree the dictionary to copy
+     * @return a dictionary holding the same words with the same popularities
+     */
+    static ArenaDictionaryTree copyOf(DictionaryTree tree) {
+        ArenaDictionaryTree arena = new ArenaDictionaryTree();
+        ArrayDeque<DictionaryTree> toVisit = new ArrayDeque<>();
+        toVisit.push(tree);
+        while (!toVisit.isEmpty()) {
+            DictionaryTree node = toVisit.pop();
+            if (node.isWord()) {
+                arena.insert(node.word(), node.popularity());
+            }
+            for (Map.Entry<Character, DictionaryTree> child : node.children().entrySet()) {
+                toVisit.push(child.getValue());
+            }
+        }
+        return arena;
+    }
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists, nothing will change.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        insert(word, overallPopularity);
+        ++overallPopularity;
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists, the popularity will be overriden by the given value.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        int node = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int index = indexOf(node, c);
+            if (index < 0) {
+                int child = newNode(node, c);
+                addEdge(node, -(index + 1), c, child);
+                node = child;
+            }
+            else {
+                node = edgeTargets[index];
+            }
+        }
+        if (!endOfWord[node]) {
+            endOfWord[node] = true;
+            ++numWords;
+        }
+        this.popularity[node] = popularity;
+        refreshBest(node);
+    }
+
+    /**
+     * Removes the specified word from this dictionary.
+     * Returns true if no other word starts with the removed word,
+     * as DictionaryTree.remove() does.
+     *
+     * @param word the word to delete from this dictionary
+     * @return whether or not the removed word was a leaf of this dictionary
+     */
+    boolean remove(String word) {
+        int node = find(word);
+        if (node == NONE || !endOfWord[node]) {
+            return false;
+        }
+        endOfWord[node] = false;
+        --numWords;
+        boolean leaf = edgeCount[node] == 0;
+        while (node != ROOT && edgeCount[node] == 0 && !endOfWord[node]) {
+            int up = parent[node];
+            removeEdge(up, indexOf(up, letter[node]) - edgeStart[up]);
+            freeNode(node);
+            node = up;
+        }
+        refreshBest(node);
+        return leaf;
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this tree; false otherwise
+     */
+    boolean contains(String word) {
+        int node = find(word);
+        return node != NONE && endOfWord[node];
+    }
+
+    /**
+     * @return the number of words in this dictionary; unlike
+     * DictionaryTree.size(), this does not count nodes
+     */
+    int numWords() {
+        return numWords;
+    }
+
+    /**
+     * @return the number of nodes in this dictionary, counting the root
+     */
+    int numNodes() {
+        int free = 0;
+        for (int node = freeNodes; node != NONE; node = parent[node]) {
+            ++free;
+        }
+        return nodes - free;
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        List<String> words = predict(prefix, 1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        List<String> words = new ArrayList<>();
+        int start = find(prefix);
+        if (start == NONE || n <= 0) {
+            return words;
+        }
+        int[] heap = new int[16];
+        int count = 0;
+        heap[count++] = 2 * start;
+        while (count > 0 && words.size() < n) {
+            int candidate = heap[0];
+            heap[0] = heap[--count];
+            siftDown(heap, count, 0);
+            int node = candidate / 2;
+            if (candidate % 2 == 1) {
+                words.add(wordAt(node));
+                continue;
+            }
+            if (count + edgeCount[node] + 1 > heap.length) {
+                heap = Arrays.copyOf(heap, Math.max(2 * heap.length, count + edgeCount[node] + 1));
+            }
+            if (endOfWord[node]) {
+                heap[count] = 2 * node + 1;
+                siftUp(heap, count++);
+            }
+            for (int i = edgeStart[node]; i < edgeStart[node] + edgeCount[node]; i++) {
+                heap[count] = 2 * edgeTargets[i];
+                siftUp(heap, count++);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Helper method for predict()
+     * Orders the candidates in the prediction heap, each of which is
+     * twice a node, plus one if it stands for the word ending at the
+     * node rather than for all the words below it. A candidate's key is
+     * the word's popularity or the best popularity below the node, and
+     * ties are broken by the letters leading to the node, so that no
+     * candidate ranks above any word it stands for.
+     *
+     * @return a negative number if candidate a ranks first, a positive
+     * number if candidate b ranks first, or zero if they are the same
+     */
+    private int compareCandidates(int a, int b) {
+        int nodeA = a / 2;
+        int nodeB = b / 2;
+        int keyA = a % 2 == 1 ? popularity[nodeA] : best[nodeA];
+        int keyB = b % 2 == 1 ? popularity[nodeB] : best[nodeB];
+        if (keyA != keyB) {
+            return Integer.compare(keyA, keyB);
+        }
+        if (nodeA == nodeB) {
+            return Integer.compare(b % 2, a % 2);
+        }
+        int depthA = depth(nodeA);
+        int depthB = depth(nodeB);
+        while (depthA > depthB) {
+            nodeA = parent[nodeA];
+            --depthA;
+        }
+        while (depthB > depthA) {
+            nodeB = parent[nodeB];
+            --depthB;
+        }
+        if (nodeA == nodeB) {
+            return Integer.compare(depth(a / 2), depth(b / 2));
+        }
+        while (parent[nodeA] != parent[nodeB]) {
+            nodeA = parent[nodeA];
+            nodeB = parent[nodeB];
+        }
+        return Character.compare(letter[nodeA], letter[nodeB]);
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int candidate = heap[index];
+        while (index > 0 && compareCandidates(candidate, heap[(index - 1) / 2]) < 0) {
+            heap[index] = heap[(index - 1) / 2];
+            index = (index - 1) / 2;
+        }
+        heap[index] = candidate;
+    }
+
+    private void siftDown(int[] heap, int count, int index) {
+        int candidate = heap[index];
+        while (2 * index + 1 < count) {
+            int child = 2 * index + 1;
+            if (child + 1 < count && compareCandidates(heap[child + 1], heap[child]) < 0) {
+                ++child;
+            }
+            if (compareCandidates(heap[child], candidate) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = candidate;
+    }
+
+    private int depth(int node) {
+        int depth = 0;
+        for (; node != ROOT; node = parent[node]) {
+            ++depth;
+        }
+        return depth;
+    }
+
+    /**
+     * @return the word spelt by the letters leading to the given node
+     */
+    private String wordAt(int node) {
+        char[] word = new char[depth(node)];
+        for (int i = word.length - 1; i >= 0; i--) {
+            word[i] = letter[node];
+            node = parent[node];
+        }
+        return new String(word);
+    }
+
+    /**
+     * @return all words stored in this dictionary, in alphabetical order
+     */
+    List<String> allWords() {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        ArrayDeque<int[]> toVisit = new ArrayDeque<>();
+        toVisit.push(new int[] {ROOT, 0});
+        while (!toVisit.isEmpty()) {
+            int[] visit = toVisit.pop();
+            int node = visit[0];
+            word.setLength(visit[1]);
+            if (node != ROOT) {
+                word.append(letter[node]);
+            }
+            if (endOfWord[node]) {
+                words.add(word.toString());
+            }
+            for (int i = edgeStart[node] + edgeCount[node] - 1; i >= edgeStart[node]; i--) {
+                toVisit.push(new int[] {edgeTargets[i], word.length()});
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Helper method for contains(), remove() and predict()
+     *
+     * @param prefix The prefix to look up
+     * @return The node at the end of the prefix, or NONE if no word starts with it
+     */
+    private int find(String prefix) {
+        int node = ROOT;
+        for (int i = 0; i < prefix.length(); i++) {
+            int index = indexOf(node, prefix.charAt(i));
+            if (index < 0) {
+                return NONE;
+            }
+            node = edgeTargets[index];
+        }
+        return node;
+    }
+
+    /**
+     * @return the index in the edge arena of the given node's edge for the
+     * given letter, or -(position + 1) with the position in the node's
+     * block at which such an edge would be inserted
+     */
+    private int indexOf(int node, char c) {
+        int index = Arrays.binarySearch(edgeLetters, edgeStart[node], edgeStart[node] + edgeCount[node], c);
+        return index >= 0 ? index : -(-(index + 1) - edgeStart[node]) - 1;
+    }
+
+    /**
+     * Recomputes the best popularity below the given node and each of
+     * its ancestors, stopping at the first one that has not changed
+     *
+     * @param node The lowest node whose words have changed
+     */
+    private void refreshBest(int node) {
+        while (node != NONE) {
+            int newBest = endOfWord[node] ? popularity[node] : NO_WORDS;
+            for (int i = edgeStart[node]; i < edgeStart[node] + edgeCount[node]; i++) {
+                newBest = Math.min(newBest, best[edgeTargets[i]]);
+            }
+            if (newBest == best[node] && node != ROOT) {
+                return;
+            }
+            best[node] = newBest;
+            node = parent[node];
+        }
+    }
+
+    private int newNode(int up, char c) {
+        int node;
+        if (freeNodes != NONE) {
+            node = freeNodes;
+            freeNodes = parent[node];
+        }
+        else {
+            if (nodes == parent.length) {
+                int capacity = 2 * nodes;
+                parent = Arrays.copyOf(parent, capacity);
+                letter = Arrays.copyOf(letter, capacity);
+                endOfWord = Arrays.copyOf(endOfWord, capacity);
+                popularity = Arrays.copyOf(popularity, capacity);
+                best = Arrays.copyOf(best, capacity);
+                edgeStart = Arrays.copyOf(edgeStart, capacity);
+                edgeCount = Arrays.copyOf(edgeCount, capacity);
+                edgeClass = Arrays.copyOf(edgeClass, capacity);
+            }
+            node = nodes++;
+        }
+        parent[node] = up;
+        letter[node] = c;
+        endOfWord[node] = false;
+        best[node] = NO_WORDS;
+        edgeStart[node] = 0;
+        edgeCount[node] = 0;
+        edgeClass[node] = -1;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        if (edgeClass[node] >= 0) {
+            freeBlock(edgeStart[node], edgeClass[node]);
+        }
+        parent[node] = freeNodes;
+        freeNodes = node;
+    }
+
+    /**
+     * Inserts an edge at the given position in a node's block,
+     * moving the block to a larger one first if it is full
+     */
+    private void addEdge(int node, int position, char c, int child) {
+        int count = edgeCount[node];
+        if (edgeClass[node] < 0 || count == 1 << edgeClass[node]) {
+            int newClass = edgeClass[node] + 1;
+            int block = allocateBlock(newClass);
+            System.arraycopy(edgeLetters, edgeStart[node], edgeLetters, block, count);
+            System.arraycopy(edgeTargets, edgeStart[node], edgeTargets, block, count);
+            if (edgeClass[node] >= 0) {
+                freeBlock(edgeStart[node], edgeClass[node]);
+            }
+            edgeStart[node] = block;
+            edgeClass[node] = (byte) newClass;
+        }
+        int index = edgeStart[node] + position;
+        System.arraycopy(edgeLetters, index, edgeLetters, index + 1, count - position);
+        System.arraycopy(edgeTargets, index, edgeTargets, index + 1, count - position);
+        edgeLetters[index] = c;
+        edgeTargets[index] = child;
+        edgeCount[node] = count + 1;
+    }
+
+    /**
+     * Removes the edge at the given position in a node's block
+     */
+    private void removeEdge(int node, int position) {
+        int index = edgeStart[node] + position;
+        int count = edgeCount[node];
+        System.arraycopy(edgeLetters, index + 1, edgeLetters, index, count - position - 1);
+        System.arraycopy(edgeTargets, index + 1, edgeTargets, index, count - position - 1);
+        edgeCount[node] = count - 1;
+    }
+
+    /**
+     * @return the start of a free block of 2^blockClass edges, taken from
+     * the blocks freed earlier or from the end of the arena
+     */
+    private int allocateBlock(int blockClass) {
+        int block = freeBlocks[blockClass];
+        if (block != NONE) {
+            freeBlocks[blockClass] = edgeTargets[block];
+            return block;
+        }
+        block = edges;
+        edges += 1 << blockClass;
+        if (edges > edgeTargets.length) {
+            int capacity = Math.max(edges, 2 * edgeTargets.length);
+            edgeLetters = Arrays.copyOf(edgeLetters, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+        }
+        return block;
+    }
+
+    private void freeBlock(int block, int blockClass) {
+        edgeTargets[block] = freeBlocks[blockClass];
+        freeBlocks[blockClass] = block;
+    }
+
+}
@@ -0,0 +1,288 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Predicts the word being typed from the word before it, ranking the
+ * completions of a prefix by how often they followed that word in a
+ * corpus, and falling back to the dictionary's own ranking when the
+ * previous word gives too few of them.
+ *
+ * Every word of the dictionary gets an int id in alphabetical order, so
+ * the words starting with any prefix have a contiguous range of ids.
+ * The words seen after each word are stored in one array of ids, sorted
+ * within each word's slice, with a parallel array of counts and an array
+ * of offsets giving where each word's slice starts. The successors of a
+ * word starting with a prefix are then found by binary searching for the
+ * prefix's range of ids, and then for that range within the slice.
+ * Each slice is also kept in order of likelihood, so when the prefix
+ * matches much of a long slice, the most likely successors are read
+ * from the top of that order instead of ranking the whole range.
+ *
+ * The model is built from the dictionary as it is at the time and does
+ * not see words inserted or removed afterwards.
+ */
+public class BigramModel {
+
+    private final DictionaryTree tree;
+    private final String[] words;
+    private final int[] popularities;
+    private final int[] offsets;
+    private final int[] successors;
+    private final int[] counts;
+    private final int[] ranked;
+
+    private BigramModel(DictionaryTree tree, String[] words, int[] popularities,
+                        int[] offsets, int[] successors, int[] counts) {
+        this.tree = tree;
+        this.words = words;
+        this.popularities = popularities;
+        this.offsets = offsets;
+        this.successors = successors;
+        this.counts = counts;
+        this.ranked = new int[successors.length];
+        Comparator<Integer> ranking = ranking();
+        for (int word = 0; word < words.length; word++) {
+            Integer[] slice = new Integer[offsets[word + 1] - offsets[word]];
+            for (int i = 0; i < slice.length; i++) {
+                slice[i] = offsets[word] + i;
+            }
+            Arrays.sort(slice, ranking);
+            for (int i = 0; i < slice.length; i++) {
+                ranked[offsets[word] + i] = slice[i];
+            }
+        }
+    }
+
+    /**
+     * @return the order of successors from most to least likely: the most
+     * often seen first, then the more popular, then alphabetically
+     */
+    private Comparator<Integer> ranking() {
+        return Comparator.comparingInt((Integer i) -> -counts[i])
+                .thenComparingInt(i -> popularities[successors[i]])
+                .thenComparingInt(i -> successors[i]);
+    }
+
+    /**
+     * Builds a model of which words follow which from the given sentences.
+     * Sentences are split into words at whitespace, and any pair of
+     * neighbouring words which are not both in the dictionary is skipped.
+     *
+     * @param tree the dictionary whose words are predicted
+     * @param sentences the corpus the model learns from
+     * @return the model of the word pairs seen in the sentences
+     */
+    static BigramModel build(DictionaryTree tree, Iterable<String> sentences) {
+        List<DictionaryTree> nodes = new ArrayList<>();
+        ArrayDeque<DictionaryTree> toVisit = new ArrayDeque<>();
+        toVisit.push(tree);
+        while (!toVisit.isEmpty()) {
+            DictionaryTree node = toVisit.pop();
+            if (node.isWord()) {
+                nodes.add(node);
+            }
+            for (Map.Entry<Character, DictionaryTree> child : node.children().entrySet()) {
+                toVisit.push(child.getValue());
+            }
+        }
+        nodes.sort(Comparator.comparing(DictionaryTree::word));
+        String[] words = new String[nodes.size()];
+        int[] popularities = new int[nodes.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = nodes.get(i).word();
+            popularities[i] = nodes.get(i).popularity();
+        }
+
+        long[] pairs = new long[64];
+        int numPairs = 0;
+        for (String sentence : sentences) {
+            int previous = -1;
+            for (String token : sentence.trim().split("\\s+")) {
+                int id = Arrays.binarySearch(words, token);
+                if (previous >= 0 && id >= 0) {
+                    if (numPairs == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, 2 * numPairs);
+                    }
+                    pairs[numPairs++] = (long) previous << 32 | id;
+                }
+                previous = id;
+            }
+        }
+        Arrays.sort(pairs, 0, numPairs);
+
+        int[] offsets = new int[words.length + 1];
+        int[] successors = new int[numPairs];
+        int[] counts = new int[numPairs];
+        int distinct = 0;
+        for (int i = 0; i < numPairs; i++) {
+            if (i > 0 && pairs[i] == pairs[i - 1]) {
+                ++counts[distinct - 1];
+            }
+            else {
+                ++offsets[(int) (pairs[i] >>> 32) + 1];
+                successors[distinct] = (int) pairs[i];
+                counts[distinct++] = 1;
+            }
+        }
+        for (int i = 0; i < words.length; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        return new BigramModel(tree, words, popularities, offsets,
+                Arrays.copyOf(successors, distinct), Arrays.copyOf(counts, distinct));
+    }
+
+    /**
+     * @param word a word of the dictionary
+     * @return the number of different words seen after the given word
+     */
+    int numSuccessors(String word) {
+        int id = Arrays.binarySearch(words, word);
+        return id < 0 ? 0 : offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Predicts the (at most) n most likely words starting with the given
+     * prefix, given the text typed before it. The words seen most often
+     * after the last word of the context come first, ties going to the
+     * more popular word. If fewer than n such words were seen, the rest
+     * are the dictionary's own predictions for the prefix.
+     *
+     * @param context the text before the word being typed, whose last word is used
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most likely words with the specified prefix
+     */
+    List<String> predict(String context, String prefix, int n) {
+        List<String> predictions = new ArrayList<>();
+        int end = context.length();
+        while (end > 0 && Character.isWhitespace(context.charAt(end - 1))) {
+            --end;
+        }
+        int start = end;
+        while (start > 0 && !Character.isWhitespace(context.charAt(start - 1))) {
+            --start;
+        }
+        int previous = Arrays.binarySearch(words, context.substring(start, end));
+
+        if (previous >= 0 && n > 0) {
+            int first = firstWithPrefix(prefix);
+            int last = lastWithPrefix(first, prefix);
+            int from = lowerBound(offsets[previous], offsets[previous + 1], first);
+            int to = lowerBound(from, offsets[previous + 1], last);
+            long sliceSize = offsets[previous + 1] - offsets[previous];
+            if ((long) (to - from) * (to - from) > sliceSize * n) {
+                for (int i = offsets[previous]; i < offsets[previous + 1] && predictions.size() < n; i++) {
+                    int successor = successors[ranked[i]];
+                    if (successor >= first && successor < last) {
+                        predictions.add(words[successor]);
+                    }
+                }
+            }
+            else {
+                Comparator<Integer> ranking = ranking();
+                PriorityQueue<Integer> best = new PriorityQueue<>(ranking.reversed());
+                for (int i = from; i < to; i++) {
+                    if (best.size() < n) {
+                        best.add(i);
+                    }
+                    else if (ranking.compare(i, best.peek()) < 0) {
+                        best.poll();
+                        best.add(i);
+                    }
+                }
+                while (!best.isEmpty()) {
+                    predictions.add(words[successors[best.poll()]]);
+                }
+                Collections.reverse(predictions);
+            }
+        }
+
+        if (predictions.size() < n) {
+            Set<String> seen = new HashSet<>(predictions);
+            for (String word : tree.predict(prefix, n + predictions.size())) {
+                if (predictions.size() < n && !seen.contains(word)) {
+                    predictions.add(word);
+                }
+            }
+        }
+        return predictions;
+    }
+
+    /**
+     * Helper method for predict()
+     * Binary searches the words for the first
+     * one that is not before the prefix
+     *
+     * @param prefix The prefix being typed
+     * @return The id of the first word starting with or after the prefix
+     */
+    private int firstWithPrefix(String prefix) {
+        int from = 0;
+        int to = words.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (words[middle].compareTo(prefix) < 0) {
+                from = middle + 1;
+            }
+            else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Helper method for predict()
+     * Binary searches the words, starting at the first
+     * one not before the prefix, for the end of the
+     * words which start with the prefix
+     *
+     * @param from The id of the first word not before the prefix
+     * @param prefix The prefix being typed
+     * @return The id just past the last word starting with the prefix
+     */
+    private int lastWithPrefix(int from, String prefix) {
+        int to = words.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (words[middle].startsWith(prefix)) {
+                from = middle + 1;
+            }
+            else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Helper method for predict()
+     * Binary searches a sorted slice of successors
+     *
+     * @param from The start of the slice
+     * @param to The end of the slice
+     * @param id The word id to look for
+     * @return The index of the first successor in the slice whose id is not below the given id
+     */
+    private int lowerBound(int from, int to, int id) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (successors[middle] < id) {
+                from = middle + 1;
+            }
+            else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+}
@@ -1,8 +1,15 @@
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.management.JMException;
 
 /**
  * @author Kelsey McKenna
@@ -11,34 +18,99 @@ public class CLI {
 
     /**
      * Loads words (lines) from the given file and inserts them into
-     * a dictionary.
+     * a dictionary, memory-mapping the file with WordFileLoader.
+     * A line may give the word's frequency after a tab.
      *
      * @param f the file from which the words will be loaded
      * @return the dictionary with the words loaded from the given file
      * @throws IOException if there was a problem opening/reading from the file
      */
     private static DictionaryTree loadWords(File f) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(f))) {
-            String word;
-            DictionaryTree d = new DictionaryTree();
-            while ((word = reader.readLine()) != null) {
-                d.insert(word);
-            }
+        return WordFileLoader.load(f);
+    }
 
-            return d;
+    /**
+     * Checks whether the given file is a binary snapshot written by
+     * DictionaryTree.save() rather than a list of words.
+     *
+     * @param f the file to check
+     * @return true if the file starts with the snapshot magic number; false otherwise
+     * @throws IOException if there was a problem opening/reading from the file
+     */
+    private static boolean isSnapshot(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            return f.length() >= Integer.BYTES && in.readInt() == DictionarySnapshot.MAGIC;
         }
     }
 
+    /**
+     * Usage: java CLI [WORDS OR SNAPSHOT FILE] [--save SNAPSHOT FILE] [--serve PORT]
+     */
     public static void main(String[] args) throws IOException {
+        //File f = new File("word-popularity.txt");
+        File f = new File(args.length > 0 ? args[0] : "test.txt");
+        String saveTo = null;
+        int servePort = -1;
+        int cacheMegabytes = 0;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--save")) {
+                saveTo = args[i + 1];
+            }
+            else if (args[i].equals("--serve")) {
+                servePort = Integer.parseInt(args[i + 1]);
+            }
+            else if (args[i].equals("--cache")) {
+                cacheMegabytes = Integer.parseInt(args[i + 1]);
+            }
+        }
+
+        try {
+            DictionaryMetrics.register();
+        }
+        catch (JMException e) {
+            System.err.println("Could not register dictionary metrics: " + e.getMessage());
+        }
+
+        Function<String, Optional<String>> predictor;
+        Predicate<String> contains;
+        BiFunction<String, Integer, List<String>> predictN;
         System.out.print("Loading dictionary ... ");
-        //DictionaryTree d = loadWords(new File("word-popularity.txt"));
-        DictionaryTree d = loadWords(new File("test.txt"));
-        System.out.println(d.numLeaves());
+        if (isSnapshot(f)) {
+            DictionarySnapshot d = DictionarySnapshot.open(f);
+            System.out.println(d.size());
+            predictor = d::predict;
+            contains = d::contains;
+            predictN = d::predict;
+        }
+        else {
+            DictionaryTree d = loadWords(f);
+            System.out.println(d.numLeaves());
+            if (saveTo != null) {
+                d.save(new File(saveTo));
+                System.out.println("Saved snapshot to " + saveTo);
+            }
+            predictor = d::predict;
+            contains = d::contains;
+            predictN = d::predict;
+            if (cacheMegabytes > 0) {
+                predictN = new PredictionCache(d, (long) cacheMegabytes << 20)::predict;
+            }
+        }
+
+        if (servePort >= 0) {
+            try (PredictionServer server = new PredictionServer(contains, predictN, servePort)) {
+                System.out.println("Serving predictions on port " + server.port() + ".");
+                server.serve();
+            }
+            return;
+        }
+
         System.out.println("Enter prefixes for prediction below.");
 
         try (BufferedReader fromUser = new BufferedReader(new InputStreamReader(System.in))) {
-            while (true) {
-                System.out.println("---> " + d.predict(fromUser.readLine()));
+            String prefix;
+            while ((prefix = fromUser.readLine()) != null) {
+                System.out.println("---> " + predictor.apply(prefix));
             }
         }
     }
@@ -0,0 +1,436 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * A read-only dictionary compiled into a minimal deterministic acyclic
+ * finite state automaton, in which words ending the same way share the
+ * states for their common ending instead of each having their own nodes.
+ *
+ * As a state is now shared by many words, popularities cannot be stored
+ * on the states themselves. Instead every transition is weighted with the
+ * number of words it skips over, so that summing the weights along a path
+ * gives the word's position in alphabetical order, which indexes into an
+ * array of popularities. All the words starting with a prefix then form
+ * one contiguous range of positions, and the most popular of them are
+ * found with a segment tree over the popularities.
+ */
+public class CompiledDictionary {
+
+    /**
+     * A state of the automaton while it is being built
+     */
+    private static final class State {
+        private final List<Character> letters = new ArrayList<>();
+        private final List<State> targets = new ArrayList<>();
+        private boolean isFinal;
+
+        private State lastTarget() {
+            return targets.get(targets.size() - 1);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State other = (State) o;
+            if (isFinal != other.isFinal || !letters.equals(other.letters)) {
+                return false;
+            }
+            for (int i = 0; i < targets.size(); i++) {
+                if (targets.get(i) != other.targets.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = isFinal ? 1 : 0;
+            for (int i = 0; i < targets.size(); i++) {
+                hash = 31 * (31 * hash + letters.get(i)) + System.identityHashCode(targets.get(i));
+            }
+            return hash;
+        }
+    }
+
+    private final boolean[] finals;
+    private final int[] firstEdge;
+    private final char[] letters;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] counts;
+    private final int[] popularities;
+    private final int[] bestIndex;
+    private final int leaves;
+
+    /**
+     * Compiles the words stored in a DictionaryTree, keeping their popularities.
+     *
+     * @param tree the dictionary to compile
+     * @return the compiled dictionary
+     */
+    static CompiledDictionary compile(DictionaryTree tree) {
+        List<String> words = new ArrayList<>();
+        List<Integer> popularities = new ArrayList<>();
+        compileHelper(tree, words, popularities);
+        int[] popularity = new int[popularities.size()];
+        for (int i = 0; i < popularity.length; i++) {
+            popularity[i] = popularities.get(i);
+        }
+        return build(words, popularity);
+    }
+
+
+    /**
+     * Helper method for compile()
+     * Recursively collects the words of the tree
+     * in alphabetical order by visiting the
+     * children of each node sorted by letter
+     *
+     * @param tree The tree to operate on
+     * @param words The list the words are added to
+     * @param popularities The list the popularities of the words are added to
+     */
+    private static void compileHelper(DictionaryTree tree, List<String> words, List<Integer> popularities) {
+        if (tree.isWord()) {
+            words.add(tree.word());
+            popularities.add(tree.popularity());
+        }
+        Character[] letters = tree.children().keySet().toArray(new Character[0]);
+        Arrays.sort(letters);
+        for (Character letter : letters) {
+            compileHelper(tree.child(letter), words, popularities);
+        }
+    }
+
+    /**
+     * Builds the minimal automaton for a list of words, adding the words
+     * one at a time and merging the states of the previous word's ending
+     * with equivalent states as soon as no later word can extend them.
+     *
+     * @param words the words, in strictly increasing alphabetical order
+     * @param popularities the popularity of each word
+     * @return the compiled dictionary
+     */
+    static CompiledDictionary build(List<String> words, int[] popularities) {
+        if (words.size() != popularities.length) {
+            throw new IllegalArgumentException("every word needs a popularity");
+        }
+        State root = new State();
+        Map<State, State> register = new HashMap<>();
+        List<State> unchecked = new ArrayList<>();
+        String previous = null;
+        for (String word : words) {
+            if (previous != null && previous.compareTo(word) >= 0) {
+                throw new IllegalArgumentException("words are not sorted: " + previous + ", " + word);
+            }
+            int common = 0;
+            while (previous != null && common < Math.min(previous.length(), word.length())
+                    && previous.charAt(common) == word.charAt(common)) {
+                ++common;
+            }
+            minimise(unchecked, common, root, register);
+
+            State state = unchecked.isEmpty() ? root : unchecked.get(unchecked.size() - 1);
+            for (int i = common; i < word.length(); i++) {
+                State next = new State();
+                state.letters.add(word.charAt(i));
+                state.targets.add(next);
+                unchecked.add(next);
+                state = next;
+            }
+            state.isFinal = true;
+            previous = word;
+        }
+        minimise(unchecked, 0, root, register);
+        return new CompiledDictionary(root, popularities.clone());
+    }
+
+
+    /**
+     * Helper method for build()
+     * Replaces the states at the end of the previous
+     * word, deepest first, with an equivalent state
+     * that is already registered, or registers them
+     *
+     * @param unchecked The states along the previous word, excluding the root
+     * @param downTo The number of states to leave unchecked
+     * @param root The root state
+     * @param register The states that have already been checked
+     */
+    private static void minimise(List<State> unchecked, int downTo, State root, Map<State, State> register) {
+        while (unchecked.size() > downTo) {
+            State child = unchecked.remove(unchecked.size() - 1);
+            State parent = unchecked.isEmpty() ? root : unchecked.get(unchecked.size() - 1);
+            State equivalent = register.putIfAbsent(child, child);
+            if (equivalent != null) {
+                parent.targets.set(parent.targets.size() - 1, equivalent);
+            }
+        }
+    }
+
+    /**
+     * Lays the automaton out in flat arrays, numbering the states so that
+     * the root is state 0 and each state's transitions are stored together.
+     */
+    private CompiledDictionary(State root, int[] popularities) {
+        Map<State, Integer> ids = new IdentityHashMap<>();
+        List<State> states = new ArrayList<>();
+        ids.put(root, 0);
+        states.add(root);
+        int edges = 0;
+        for (int i = 0; i < states.size(); i++) {
+            for (State target : states.get(i).targets) {
+                ++edges;
+                if (!ids.containsKey(target)) {
+                    ids.put(target, states.size());
+                    states.add(target);
+                }
+            }
+        }
+
+        finals = new boolean[states.size()];
+        firstEdge = new int[states.size() + 1];
+        letters = new char[edges];
+        targets = new int[edges];
+        weights = new int[edges];
+        counts = new int[states.size()];
+        int edge = 0;
+        int leafCount = 0;
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            finals[i] = state.isFinal;
+            firstEdge[i] = edge;
+            for (int j = 0; j < state.targets.size(); j++) {
+                letters[edge] = state.letters.get(j);
+                targets[edge] = ids.get(state.targets.get(j));
+                ++edge;
+            }
+            if (state.targets.isEmpty()) {
+                ++leafCount;
+            }
+        }
+        firstEdge[states.size()] = edge;
+        leaves = leafCount;
+
+        for (int i = states.size() - 1; i >= 0; i--) {
+            countWords(i);
+        }
+        this.popularities = popularities;
+        bestIndex = new int[2 * Math.max(1, popularities.length)];
+        int size = bestIndex.length / 2;
+        for (int i = 0; i < size; i++) {
+            bestIndex[size + i] = i < popularities.length ? i : -1;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            bestIndex[i] = better(bestIndex[2 * i], bestIndex[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Counts the words reachable from a state and weights its transitions
+     * with the number of words that come before them alphabetically.
+     * The states of a DAG may be reached many times, so each state is
+     * counted once and its count reused; the explicit stack avoids deep
+     * recursion on long words.
+     */
+    private void countWords(int start) {
+        if (counts[start] > 0) {
+            return;
+        }
+        ArrayList<Integer> stack = new ArrayList<>();
+        stack.add(start);
+        while (!stack.isEmpty()) {
+            int state = stack.get(stack.size() - 1);
+            boolean ready = true;
+            for (int edge = firstEdge[state]; edge < firstEdge[state + 1]; edge++) {
+                if (counts[targets[edge]] == 0) {
+                    stack.add(targets[edge]);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.remove(stack.size() - 1);
+                int count = finals[state] ? 1 : 0;
+                for (int edge = firstEdge[state]; edge < firstEdge[state + 1]; edge++) {
+                    weights[edge] = count;
+                    count += counts[targets[edge]];
+                }
+                counts[state] = count;
+            }
+        }
+    }
+
+    /**
+     * @return the word index of the more popular of two words, breaking ties
+     * alphabetically, where -1 stands for no word
+     */
+    private int better(int a, int b) {
+        if (a < 0 || b < 0) {
+            return Math.max(a, b);
+        }
+        if (popularities[a] != popularities[b]) {
+            return popularities[a] < popularities[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    /**
+     * @return the index of the most popular word with an index in [from, to), or -1 if the range is empty
+     */
+    private int bestInRange(int from, int to) {
+        int size = bestIndex.length / 2;
+        int best = -1;
+        for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                best = better(best, bestIndex[low++]);
+            }
+            if ((high & 1) == 1) {
+                best = better(best, bestIndex[--high]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of states in the automaton
+     */
+    int size() {
+        return finals.length;
+    }
+
+    /**
+     * @return the number of transitions in the automaton
+     */
+    int numEdges() {
+        return letters.length;
+    }
+
+    /**
+     * @return the number of states with no transitions
+     */
+    int numLeaves() {
+        return leaves;
+    }
+
+    /**
+     * @return the number of words in the dictionary
+     */
+    int numWords() {
+        return popularities.length;
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this dictionary; false otherwise
+     */
+    boolean contains(String word) {
+        int state = 0;
+        for (int i = 0; i < word.length() && state >= 0; i++) {
+            int edge = findEdge(state, word.charAt(i));
+            state = edge < 0 ? -1 : targets[edge];
+        }
+        return state >= 0 && finals[state];
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        List<String> words = predict(prefix, 1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        List<String> words = new ArrayList<>();
+        int state = 0;
+        int from = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            int edge = findEdge(state, prefix.charAt(i));
+            if (edge < 0) {
+                return words;
+            }
+            from += weights[edge];
+            state = targets[edge];
+        }
+
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[2] == b[2] ? 0 : a[2] == better(a[2], b[2]) ? -1 : 1);
+        ranges.add(new int[]{from, from + counts[state], bestInRange(from, from + counts[state])});
+        while (words.size() < n && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            if (range[2] < 0) {
+                continue;
+            }
+            words.add(wordAt(range[2]));
+            if (range[0] < range[2]) {
+                ranges.add(new int[]{range[0], range[2], bestInRange(range[0], range[2])});
+            }
+            if (range[2] + 1 < range[1]) {
+                ranges.add(new int[]{range[2] + 1, range[1], bestInRange(range[2] + 1, range[1])});
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Spells out the word at the given alphabetical position by following,
+     * from the root, the transition whose range of words holds the position.
+     */
+    private String wordAt(int index) {
+        StringBuilder word = new StringBuilder();
+        int state = 0;
+        int remaining = index;
+        while (!(finals[state] && remaining == 0)) {
+            int edge = firstEdge[state + 1] - 1;
+            while (weights[edge] > remaining) {
+                --edge;
+            }
+            remaining -= weights[edge];
+            word.append(letters[edge]);
+            state = targets[edge];
+        }
+        return word.toString();
+    }
+
+    /**
+     * @return the transition out of the state labelled with the given letter, or -1 if there is none
+     */
+    private int findEdge(int state, char letter) {
+        int low = firstEdge[state];
+        int high = firstEdge[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (letters[mid] < letter) {
+                low = mid + 1;
+            }
+            else if (letters[mid] > letter) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,522 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A dictionary which many threads can read without locking while
+ * another thread inserts and removes words.
+ *
+ * Nodes are never changed once they have been built. A writer copies
+ * the nodes along the path of the word it changes, shares every other
+ * node with the previous version, and then publishes the new root in a
+ * single volatile write. A reader works on whichever root it read first,
+ * so it sees every word of one version and never a half-inserted word.
+ * Writers are serialised with a lock, which readers never take.
+ */
+public class ConcurrentDictionaryTree {
+
+    /**
+     * The number of most popular descendant words cached at every node
+     */
+    private static final int CACHE_SIZE = 10;
+
+    private static final Node EMPTY = new Node(new char[0], new Node[0], null, new Entry[0]);
+
+    /**
+     * A word and its popularity. Entries are shared by every copy of the
+     * node the word ends at, so the caches of nodes which are not copied
+     * stay valid.
+     */
+    private static final class Entry {
+        private static final Comparator<Entry> RANKING =
+                Comparator.comparingInt((Entry entry) -> entry.popularity).thenComparing(entry -> entry.word);
+
+        private final String word;
+        private final int popularity;
+
+        private Entry(String word, int popularity) {
+            this.word = word;
+            this.popularity = popularity;
+        }
+    }
+
+    /**
+     * An immutable node, with its children sorted by letter.
+     */
+    private static final class Node {
+        private final char[] letters;
+        private final Node[] children;
+        private final Entry entry;
+        private final Entry[] topWords;
+
+        private Node(char[] letters, Node[] children, Entry entry, Entry[] topWords) {
+            this.letters = letters;
+            this.children = children;
+            this.entry = entry;
+            this.topWords = topWords;
+        }
+
+        private Node child(char letter) {
+            int index = Arrays.binarySearch(letters, letter);
+            return index < 0 ? null : children[index];
+        }
+
+        /**
+         * @return a copy of this node with the child for the given letter
+         * replaced, added, or removed if the new child is null, which still
+         * holds this node's cache
+         */
+        private Node withChild(char letter, Node child) {
+            int index = Arrays.binarySearch(letters, letter);
+            char[] newLetters;
+            Node[] newChildren;
+            if (index >= 0 && child != null) {
+                newLetters = letters;
+                newChildren = children.clone();
+                newChildren[index] = child;
+            }
+            else if (index >= 0) {
+                newLetters = new char[letters.length - 1];
+                newChildren = new Node[children.length - 1];
+                System.arraycopy(letters, 0, newLetters, 0, index);
+                System.arraycopy(letters, index + 1, newLetters, index, letters.length - index - 1);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            }
+            else {
+                index = -(index + 1);
+                newLetters = new char[letters.length + 1];
+                newChildren = new Node[children.length + 1];
+                System.arraycopy(letters, 0, newLetters, 0, index);
+                System.arraycopy(letters, index, newLetters, index + 1, letters.length - index);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                newLetters[index] = letter;
+                newChildren[index] = child;
+            }
+            return new Node(newLetters, newChildren, entry, topWords);
+        }
+    }
+
+    private volatile Node root = EMPTY;
+    private int overallPopularity = 1;
+
+    /**
+     * Builds a dictionary from words sorted alphabetically, without
+     * copying any node: each node is built once all of its words have
+     * been seen, which in sorted order is as soon as a word no longer
+     * shares its prefix.
+     *
+     * @param words the words, in alphabetical order and without duplicates
+     * @param popularities the popularity of each word
+     * @return the dictionary holding the given words
+     */
+    static ConcurrentDictionaryTree build(List<String> words, int[] popularities) {
+        StringBuilder path = new StringBuilder();
+        ArrayList<StringBuilder> letters = new ArrayList<>();
+        ArrayList<ArrayList<Node>> children = new ArrayList<>();
+        ArrayList<Entry> entries = new ArrayList<>();
+        letters.add(new StringBuilder());
+        children.add(new ArrayList<>());
+        entries.add(null);
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            int common = 0;
+            while (common < path.length() && common < word.length() && path.charAt(common) == word.charAt(common)) {
+                ++common;
+            }
+            while (path.length() > common) {
+                finishNode(path, letters, children, entries);
+            }
+            while (path.length() < word.length()) {
+                path.append(word.charAt(path.length()));
+                letters.add(new StringBuilder());
+                children.add(new ArrayList<>());
+                entries.add(null);
+            }
+            entries.set(path.length(), new Entry(word, popularities[i]));
+        }
+        while (path.length() > 0) {
+            finishNode(path, letters, children, entries);
+        }
+        ConcurrentDictionaryTree tree = new ConcurrentDictionaryTree();
+        tree.root = newNode(letters.get(0), children.get(0), entries.get(0));
+        return tree;
+    }
+
+    /**
+     * Helper method for build()
+     * Builds the node at the end of the path, now that
+     * all of its words have been seen, and adds it to
+     * the children of the node before it
+     *
+     * @param path The letters of the path to the node
+     * @param letters The letters of the children built so far of each node on the path
+     * @param children The children built so far of each node on the path
+     * @param entries The word of each node on the path, if it has one
+     */
+    private static void finishNode(StringBuilder path, ArrayList<StringBuilder> letters,
+                                   ArrayList<ArrayList<Node>> children, ArrayList<Entry> entries) {
+        int depth = path.length();
+        Node node = newNode(letters.remove(depth), children.remove(depth), entries.remove(depth));
+        letters.get(depth - 1).append(path.charAt(depth - 1));
+        children.get(depth - 1).add(node);
+        path.setLength(depth - 1);
+    }
+
+    /**
+     * Helper method for build()
+     * Makes a node with its cache built from its word
+     * and the caches of its children. A node with just
+     * a word, or just one child, shares its cache with
+     * the entry or child instead of sorting a new one
+     */
+    private static Node newNode(StringBuilder letters, List<Node> children, Entry entry) {
+        char[] childLetters = new char[letters.length()];
+        letters.getChars(0, childLetters.length, childLetters, 0);
+        Node node = new Node(childLetters, children.toArray(new Node[0]), entry, null);
+        if (children.isEmpty()) {
+            return new Node(node.letters, node.children, entry, entry == null ? new Entry[0] : new Entry[] {entry});
+        }
+        if (children.size() == 1 && entry == null) {
+            return new Node(node.letters, node.children, null, children.get(0).topWords);
+        }
+        return new Node(node.letters, node.children, entry, rebuildCache(node));
+    }
+
+    /**
+     * Inserts the given word into this dictionary, with a popularity
+     * one lower than that of the previously inserted word.
+     *
+     * @param word the word to insert
+     */
+    synchronized void insert(String word) {
+        insert(word, overallPopularity);
+        ++overallPopularity;
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists, the popularity will be overriden by the given value.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    synchronized void insert(String word, int popularity) {
+        Node current = root;
+        Node[] path = new Node[word.length() + 1];
+        path[0] = current;
+        for (int i = 0; i < word.length() && current != null; i++) {
+            current = current.child(word.charAt(i));
+            path[i + 1] = current;
+        }
+        Entry removed = current == null ? null : current.entry;
+        Entry added = new Entry(word, popularity);
+
+        Node node = current == null ? EMPTY : current;
+        Node marked = new Node(node.letters, node.children, added, node.topWords);
+        node = new Node(node.letters, node.children, added, updateCache(marked, removed, added));
+        for (int i = word.length() - 1; i >= 0; i--) {
+            Node parent = path[i] == null ? EMPTY : path[i];
+            Node copy = parent.withChild(word.charAt(i), node);
+            node = new Node(copy.letters, copy.children, copy.entry, updateCache(copy, removed, added));
+        }
+        root = node;
+    }
+
+    /**
+     * Sets the number of the next word inserted without a popularity.
+     *
+     * @param popularity the popularity given to the next word
+     */
+    synchronized void setOverallPopularity(int popularity) {
+        overallPopularity = popularity;
+    }
+
+    /**
+     * @return the popularity the next word inserted without a popularity will get
+     */
+    synchronized int overallPopularity() {
+        return overallPopularity;
+    }
+
+    /**
+     * Removes the specified word from this dictionary, deleting any nodes
+     * left with no children and no word.
+     *
+     * @param word the word to delete from this dictionary
+     * @return true if no other word started with the deleted word; false otherwise
+     */
+    synchronized boolean remove(String word) {
+        Node current = root;
+        Node[] path = new Node[word.length() + 1];
+        path[0] = current;
+        for (int i = 0; i < word.length() && current != null; i++) {
+            current = current.child(word.charAt(i));
+            path[i + 1] = current;
+        }
+        if (current == null || current.entry == null) {
+            return false;
+        }
+        Entry removed = current.entry;
+
+        Node node = null;
+        if (current.children.length > 0) {
+            Node unmarked = new Node(current.letters, current.children, null, current.topWords);
+            node = new Node(current.letters, current.children, null, updateCache(unmarked, removed, null));
+        }
+        for (int i = word.length() - 1; i >= 0; i--) {
+            Node copy = path[i].withChild(word.charAt(i), node);
+            if (i > 0 && copy.children.length == 0 && copy.entry == null) {
+                node = null;
+            }
+            else {
+                node = new Node(copy.letters, copy.children, copy.entry, updateCache(copy, removed, null));
+            }
+        }
+        root = node == null ? EMPTY : node;
+        return current.children.length == 0;
+    }
+
+    /**
+     * Works out the cache of a copied node after one word below it has
+     * been removed or re-ranked. The cache only has to be rebuilt from the
+     * children when a cached word has left it or dropped to the last
+     * position, as a word outside the cache might now rank above it.
+     *
+     * @param copy The copied node, holding its old cache and its new children
+     * @param removed The entry that is no longer in the dictionary, or null
+     * @param added The entry that is new to the dictionary, or null
+     * @return The new cache
+     */
+    private static Entry[] updateCache(Node copy, Entry removed, Entry added) {
+        Entry[] old = copy.topWords;
+        ArrayList<Entry> top = new ArrayList<>(old.length + 1);
+        boolean wasCached = false;
+        for (Entry entry : old) {
+            if (entry == removed) {
+                wasCached = true;
+            }
+            else {
+                top.add(entry);
+            }
+        }
+        boolean wasFull = wasCached && old.length == CACHE_SIZE;
+        int index = top.size();
+        if (added != null) {
+            index = Collections.binarySearch(top, added, Entry.RANKING);
+            index = index < 0 ? -(index + 1) : index;
+        }
+        if (wasFull && index == top.size()) {
+            return rebuildCache(copy);
+        }
+        if (added != null && index < CACHE_SIZE) {
+            top.add(index, added);
+        }
+        while (top.size() > CACHE_SIZE) {
+            top.remove(top.size() - 1);
+        }
+        return top.toArray(new Entry[0]);
+    }
+
+    /**
+     * Rebuilds the cache of a node by merging its own word with the
+     * caches of its children.
+     */
+    private static Entry[] rebuildCache(Node node) {
+        ArrayList<Entry> candidates = new ArrayList<>();
+        if (node.entry != null) {
+            candidates.add(node.entry);
+        }
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.topWords));
+        }
+        candidates.sort(Entry.RANKING);
+        return candidates.subList(0, Math.min(CACHE_SIZE, candidates.size())).toArray(new Entry[0]);
+    }
+
+    /**
+     * @return an unchanging view of the dictionary as it is now, which
+     * later inserts and removes do not affect
+     */
+    Snapshot snapshot() {
+        return new Snapshot(root);
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this dictionary; false otherwise
+     */
+    boolean contains(String word) {
+        return snapshot().contains(word);
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        return snapshot().predict(prefix);
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        return snapshot().predict(prefix, n);
+    }
+
+    /**
+     * @return all words stored in this dictionary, in alphabetical order
+     */
+    List<String> allWords() {
+        return snapshot().allWords();
+    }
+
+    /**
+     * One published version of the dictionary. All the queries made through
+     * the same snapshot see the same words, however many writes happen
+     * in the meantime.
+     */
+    static final class Snapshot {
+
+        private final Node root;
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        private Node find(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            return node;
+        }
+
+        /**
+         * @param word the word whose presence will be checked
+         * @return true if the specified word is stored in this snapshot; false otherwise
+         */
+        boolean contains(String word) {
+            Node node = find(word);
+            return node != null && node.entry != null;
+        }
+
+        /**
+         * @param prefix the prefix of the word returned
+         * @return a word that starts with the given prefix, or an empty optional
+         * if no such word is found.
+         */
+        Optional<String> predict(String prefix) {
+            Node node = find(prefix);
+            if (node == null || node.topWords.length == 0) {
+                return Optional.empty();
+            }
+            return Optional.of(node.topWords[0].word);
+        }
+
+        /**
+         * Predicts the (at most) n most popular words based on the specified prefix,
+         * reading them from the cache of the node at the end of the prefix, or for
+         * more words than the cache holds, walking the subtree while keeping only the
+         * best n words in a heap.
+         *
+         * @param prefix the prefix of the words found
+         * @param n the maximum number of words to predict
+         * @return the (at most) n most popular words with the specified prefix
+         */
+        List<String> predict(String prefix, int n) {
+            ArrayList<String> words = new ArrayList<>();
+            Node start = find(prefix);
+            if (start == null) {
+                return words;
+            }
+            if (n <= CACHE_SIZE) {
+                for (int i = 0; i < n && i < start.topWords.length; i++) {
+                    words.add(start.topWords[i].word);
+                }
+                return words;
+            }
+            PriorityQueue<Entry> best = new PriorityQueue<>(Entry.RANKING.reversed());
+            ArrayDeque<Node> toVisit = new ArrayDeque<>();
+            toVisit.push(start);
+            while (!toVisit.isEmpty()) {
+                Node node = toVisit.pop();
+                if (node.entry != null) {
+                    if (best.size() < n) {
+                        best.add(node.entry);
+                    }
+                    else if (Entry.RANKING.compare(node.entry, best.peek()) < 0) {
+                        best.poll();
+                        best.add(node.entry);
+                    }
+                }
+                for (Node child : node.children) {
+                    if (best.size() < n || Entry.RANKING.compare(child.topWords[0], best.peek()) < 0) {
+                        toVisit.push(child);
+                    }
+                }
+            }
+            while (!best.isEmpty()) {
+                words.add(best.poll().word);
+            }
+            Collections.reverse(words);
+            return words;
+        }
+
+        /**
+         * @return all words stored in this snapshot, in alphabetical order
+         */
+        List<String> allWords() {
+            ArrayList<String> words = new ArrayList<>();
+            ArrayDeque<Node> toVisit = new ArrayDeque<>();
+            toVisit.push(root);
+            while (!toVisit.isEmpty()) {
+                Node node = toVisit.pop();
+                if (node.entry != null) {
+                    words.add(node.entry.word);
+                }
+                for (int i = node.children.length - 1; i >= 0; i--) {
+                    toVisit.push(node.children[i]);
+                }
+            }
+            return words;
+        }
+
+        /**
+         * Calls the given action with every word stored in this snapshot and
+         * its popularity, in alphabetical order.
+         *
+         * @param action the action to call with each word and its popularity
+         */
+        void forEach(ObjIntConsumer<String> action) {
+            ArrayDeque<Node> toVisit = new ArrayDeque<>();
+            toVisit.push(root);
+            while (!toVisit.isEmpty()) {
+                Node node = toVisit.pop();
+                if (node.entry != null) {
+                    action.accept(node.entry.word, node.entry.popularity);
+                }
+                for (int i = node.children.length - 1; i >= 0; i--) {
+                    toVisit.push(node.children[i]);
+                }
+            }
+        }
+    }
+
+}
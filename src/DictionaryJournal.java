@@ -0,0 +1,644 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a ConcurrentDictionaryTree on disk, so the words inserted and
+ * removed while it is running are still there when it is opened again.
+ *
+ * The directory holds a base image, the words and popularities of the
+ * dictionary as of some journal record, and the journal, which records
+ * every insert and remove in segments of about segmentBytes each. Each
+ * record has a sequence number and a checksum, so a record torn by a
+ * crash is found and cut off when the journal is opened. Opening loads
+ * the newest base image and replays only the records after it, so it
+ * takes time in proportion to the dictionary and the records since the
+ * last compaction, not to everything that has ever happened to it.
+ *
+ * Records are written by a single thread, which syncs every record
+ * queued while it was writing the last batch at once, so many writers
+ * share each sync. Only once a batch is synced does the thread apply its
+ * changes to the dictionary, in the order of their records, so the
+ * dictionary never holds a change that is not on disk.
+ *
+ * Once compactBytes of records have been written since the last base
+ * image, a background thread writes a new one from a snapshot of the
+ * dictionary and deletes the segments it makes redundant. Readers never
+ * wait for it, and writers only wait while the snapshot is taken. If it
+ * fails, the journal still holds every record and the next compaction
+ * tries again, and close() reports the failure.
+ */
+public class DictionaryJournal implements Closeable {
+
+    static final int MAGIC = 0x57504A42;
+    private static final int VERSION = 1;
+
+    private static final long SEGMENT_BYTES = 64 << 20;
+    private static final long COMPACT_BYTES = 16 << 20;
+
+    private static final byte INSERT = 1;
+    private static final byte INSERT_NEXT = 2;
+    private static final byte REMOVE = 3;
+
+    /**
+     * The bytes of a record before the part its checksum covers: its
+     * length and checksum
+     */
+    private static final int RECORD_PREFIX = 2 * Integer.BYTES;
+
+    /**
+     * The bytes of a record's checksummed part before its word: its
+     * sequence number, type and popularity
+     */
+    private static final int RECORD_FIELDS = Long.BYTES + 1 + Integer.BYTES;
+
+    private final File directory;
+    private final ConcurrentDictionaryTree tree;
+    private final long segmentBytes;
+    private final long compactBytes;
+
+    /**
+     * A change queued for the writer thread, and what applying it returned
+     */
+    private static final class Record {
+        private final byte[] bytes;
+        private final byte type;
+        private final int popularity;
+        private final String word;
+        private boolean result;
+
+        private Record(long sequence, byte type, int popularity, String word) {
+            this.bytes = encode(sequence, type, popularity, word);
+            this.type = type;
+            this.popularity = popularity;
+            this.word = word;
+        }
+    }
+
+    private List<Record> pending = new ArrayList<>();
+    private long lastSequence;
+    private long durableSequence;
+    private IOException failure;
+    private IOException compactionFailure;
+    private boolean closed;
+
+    private FileChannel segment;
+    private long segmentSize;
+    private long journalBytes;
+    private volatile long compactedBytes;
+
+    private final Object compaction = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "dictionary-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread writer = new Thread(this::writeRecords, "dictionary-journal-writer");
+
+    private DictionaryJournal(File directory, ConcurrentDictionaryTree tree, long lastSequence,
+                              long segmentBytes, long compactBytes) throws IOException {
+        this.directory = directory;
+        this.tree = tree;
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        this.segmentBytes = segmentBytes;
+        this.compactBytes = compactBytes;
+        this.segment = openSegment(lastSequence + 1);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens the journal in the given directory, creating an empty one if
+     * the directory holds none.
+     *
+     * @param directory the directory holding the base images and journal segments
+     * @return the journal, with the dictionary as it was when last written
+     * @throws IOException if the journal could not be read or created
+     */
+    static DictionaryJournal open(File directory) throws IOException {
+        return open(directory, SEGMENT_BYTES, COMPACT_BYTES);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating an empty one if
+     * the directory holds none. Any record torn by a crash is cut off.
+     *
+     * @param directory the directory holding the base images and journal segments
+     * @param segmentBytes the size after which a new journal segment is started
+     * @param compactBytes the number of bytes of records written after which
+     * a new base image is written in the background
+     * @return the journal, with the dictionary as it was when last written
+     * @throws IOException if the journal could not be read or created
+     */
+    static DictionaryJournal open(File directory, long segmentBytes, long compactBytes) throws IOException {
+        Files.createDirectories(directory.toPath());
+        ConcurrentDictionaryTree tree = new ConcurrentDictionaryTree();
+        long[] bases = sequences(directory, "base-", ".img");
+        long baseSequence = 0;
+        if (bases.length > 0) {
+            baseSequence = bases[bases.length - 1];
+            tree = readBase(new File(directory, name("base-", baseSequence, ".img")));
+        }
+
+        long[] segments = sequences(directory, "journal-", ".log");
+        int first = 0;
+        while (first + 1 < segments.length && segments[first + 1] <= baseSequence + 1) {
+            ++first;
+        }
+        long lastSequence = baseSequence;
+        for (int i = first; i < segments.length; i++) {
+            File f = new File(directory, name("journal-", segments[i], ".log"));
+            long[] replayed = replay(f, tree, lastSequence);
+            lastSequence = replayed[0];
+            if (replayed[1] < f.length()) {
+                try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(replayed[1]);
+                    channel.force(true);
+                }
+                for (int j = i + 1; j < segments.length; j++) {
+                    Files.delete(new File(directory, name("journal-", segments[j], ".log")).toPath());
+                }
+                break;
+            }
+        }
+        return new DictionaryJournal(directory, tree, lastSequence, segmentBytes, compactBytes);
+    }
+
+    /**
+     * @return the dictionary, which may be read from any thread but must
+     * only be changed through this journal
+     */
+    ConcurrentDictionaryTree tree() {
+        return tree;
+    }
+
+    /**
+     * Inserts the given word into the dictionary, with a popularity one
+     * lower than that of the previously inserted word, returning once the
+     * insert is on disk.
+     *
+     * @param word the word to insert
+     * @throws IOException if the journal could not be written
+     */
+    void insert(String word) throws IOException {
+        append(INSERT_NEXT, 0, word);
+    }
+
+    /**
+     * Inserts the given word into the dictionary with the given popularity,
+     * returning once the insert is on disk.
+     *
+     * @param word the word to insert
+     * @param popularity the popularity of the inserted word
+     * @throws IOException if the journal could not be written
+     */
+    void insert(String word, int popularity) throws IOException {
+        append(INSERT, popularity, word);
+    }
+
+    /**
+     * Removes the given word from the dictionary, returning once the
+     * remove is on disk.
+     *
+     * @param word the word to delete from the dictionary
+     * @return true if no other word started with the deleted word; false otherwise
+     * @throws IOException if the journal could not be written
+     */
+    boolean remove(String word) throws IOException {
+        return append(REMOVE, 0, word);
+    }
+
+    /**
+     * Helper method for insert() and remove()
+     * Queues the record for the writer thread, then
+     * waits for the writer to sync the record and
+     * apply it to the dictionary
+     *
+     * @param type The type of the record
+     * @param popularity The popularity of an inserted word
+     * @param word The word inserted or removed
+     * @return What the change returned, or false for an insert
+     * @throws IOException if the journal could not be written
+     */
+    private synchronized boolean append(byte type, int popularity, String word) throws IOException {
+        if (closed || failure != null) {
+            throw new IOException("journal is closed", failure);
+        }
+        long sequence = ++lastSequence;
+        Record record = new Record(sequence, type, popularity, word);
+        pending.add(record);
+        notifyAll();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                wait();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the journal");
+        }
+        if (durableSequence < sequence) {
+            throw new IOException("could not write the journal", failure);
+        }
+        return record.result;
+    }
+
+    private static boolean apply(ConcurrentDictionaryTree tree, byte type, int popularity, String word) {
+        if (type == INSERT) {
+            tree.insert(word, popularity);
+        }
+        else if (type == INSERT_NEXT) {
+            tree.insert(word);
+        }
+        else {
+            return tree.remove(word);
+        }
+        return false;
+    }
+
+    /**
+     * Run by the writer thread: writes every queued record, syncs them
+     * to disk with a single force(), applies them to the dictionary and
+     * wakes their writers, until the journal is closed and nothing is
+     * left in the queue.
+     */
+    private void writeRecords() {
+        while (true) {
+            List<Record> batch;
+            long batchEnd;
+            synchronized (this) {
+                try {
+                    while (pending.isEmpty() && !closed) {
+                        wait();
+                    }
+                }
+                catch (InterruptedException e) {
+                    failure = new InterruptedIOException("journal writer interrupted");
+                    notifyAll();
+                    return;
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchEnd = lastSequence;
+            }
+            int size = 0;
+            for (Record record : batch) {
+                size += record.bytes.length;
+            }
+            try {
+                if (segmentSize >= segmentBytes) {
+                    segment.close();
+                    segment = openSegment(batchEnd - batch.size() + 1);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                for (Record record : batch) {
+                    buffer.put(record.bytes);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    segment.write(buffer);
+                }
+                segment.force(false);
+                segmentSize += size;
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                for (Record record : batch) {
+                    record.result = apply(tree, record.type, record.popularity, record.word);
+                }
+                durableSequence = batchEnd;
+                journalBytes += size;
+                notifyAll();
+            }
+            if (journalBytes - compactedBytes >= compactBytes && compacting.compareAndSet(false, true)) {
+                compactor.execute(() -> {
+                    try {
+                        compact();
+                    }
+                    catch (IOException e) {
+                        synchronized (this) {
+                            if (compactionFailure == null) {
+                                compactionFailure = e;
+                            }
+                        }
+                    }
+                    finally {
+                        compacting.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Helper method for the constructor and writeRecords()
+     * Starts a new segment for the records from the
+     * given sequence number on. A segment of that name
+     * can only be left from a crash before any of its
+     * records were synced, so it is emptied
+     *
+     * @param firstSequence The sequence number of the segment's first record
+     * @return The channel records are appended to
+     * @throws IOException if the segment could not be created
+     */
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        File f = new File(directory, name("journal-", firstSequence, ".log"));
+        FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        syncDirectory(directory);
+        segmentSize = 0;
+        return channel;
+    }
+
+    /**
+     * Writes a new base image of the dictionary as it is now, then deletes
+     * the older base images and every journal segment holding only records
+     * the new image already includes. As the dictionary only holds changes
+     * whose records are on disk, the image never claims a record that was
+     * not. Writers wait only while the snapshot is taken, and readers not
+     * at all.
+     *
+     * @throws IOException if the base image could not be written
+     */
+    void compact() throws IOException {
+        synchronized (compaction) {
+            ConcurrentDictionaryTree.Snapshot snapshot;
+            int overallPopularity;
+            long sequence;
+            long bytes;
+            synchronized (this) {
+                snapshot = tree.snapshot();
+                overallPopularity = tree.overallPopularity();
+                sequence = durableSequence;
+                bytes = journalBytes;
+            }
+
+            File temporary = new File(directory, "base.tmp");
+            try (FileOutputStream file = new FileOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(sequence);
+                out.writeInt(overallPopularity);
+                try {
+                    snapshot.forEach((word, popularity) -> {
+                        try {
+                            out.writeInt(word.length());
+                            out.writeChars(word);
+                            out.writeInt(popularity);
+                        }
+                        catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+                catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                out.writeInt(-1);
+                out.flush();
+                file.getFD().sync();
+            }
+            catch (IOException e) {
+                Files.deleteIfExists(temporary.toPath());
+                throw e;
+            }
+            Files.move(temporary.toPath(), new File(directory, name("base-", sequence, ".img")).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(directory);
+            compactedBytes = bytes;
+
+            for (long base : sequences(directory, "base-", ".img")) {
+                if (base < sequence) {
+                    Files.deleteIfExists(new File(directory, name("base-", base, ".img")).toPath());
+                }
+            }
+            long[] segments = sequences(directory, "journal-", ".log");
+            for (int i = 0; i + 1 < segments.length && segments[i + 1] <= sequence + 1; i++) {
+                Files.deleteIfExists(new File(directory, name("journal-", segments[i], ".log")).toPath());
+            }
+        }
+    }
+
+    /**
+     * Waits for every queued record to be written and for any compaction
+     * already started or queued to finish, then closes the journal. The
+     * dictionary can still be read afterwards.
+     *
+     * @throws IOException if the last records could not be written, or a
+     * background compaction failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted closing the journal");
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted closing the journal");
+        }
+        segment.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (compactionFailure != null) {
+                throw new IOException("could not compact the journal", compactionFailure);
+            }
+        }
+    }
+
+    /**
+     * Helper method for append()
+     * Encodes a record as its length, the CRC-32 of
+     * the rest, its sequence number, its type, the
+     * popularity and the word's characters
+     */
+    private static byte[] encode(long sequence, byte type, int popularity, String word) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX + RECORD_FIELDS + 2 * word.length());
+        buffer.putInt(RECORD_FIELDS + 2 * word.length());
+        buffer.putInt(0);
+        buffer.putLong(sequence).put(type).putInt(popularity);
+        for (int i = 0; i < word.length(); i++) {
+            buffer.putChar(word.charAt(i));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_PREFIX, RECORD_FIELDS + 2 * word.length());
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Helper method for open()
+     * Applies the records of a segment that come after
+     * the given sequence number, stopping at the first
+     * record which is torn or out of sequence
+     *
+     * @param f The segment to replay
+     * @param tree The dictionary to apply the records to
+     * @param lastSequence The sequence number of the last record applied so far
+     * @return The sequence number of the last record applied, and the
+     * length of the segment up to the end of that record
+     * @throws IOException if the segment could not be read
+     */
+    private static long[] replay(File f, ConcurrentDictionaryTree tree, long lastSequence) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(f.toPath()));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_PREFIX + RECORD_FIELDS) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            int checksum = buffer.getInt(start + Integer.BYTES);
+            int payload = start + RECORD_PREFIX;
+            if (length < RECORD_FIELDS || length > buffer.limit() - payload || (length - RECORD_FIELDS) % 2 != 0) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), payload, length);
+            long sequence = buffer.getLong(payload);
+            if ((int) crc.getValue() != checksum || sequence > lastSequence + 1) {
+                break;
+            }
+            if (sequence == lastSequence + 1) {
+                byte type = buffer.get(payload + Long.BYTES);
+                int popularity = buffer.getInt(payload + Long.BYTES + 1);
+                char[] word = new char[(length - RECORD_FIELDS) / 2];
+                buffer.position(payload + RECORD_FIELDS);
+                buffer.asCharBuffer().get(word);
+                apply(tree, type, popularity, new String(word));
+                lastSequence = sequence;
+            }
+            buffer.position(payload + length);
+        }
+        return new long[] {lastSequence, buffer.position()};
+    }
+
+    /**
+     * Helper method for open()
+     * Builds the dictionary held in a base image,
+     * whose words are in alphabetical order
+     *
+     * @param f The base image
+     * @return The dictionary, with its popularity counter restored
+     * @throws IOException if the base image could not be read or is not a base image
+     */
+    private static ConcurrentDictionaryTree readBase(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(f + " is not a dictionary base image");
+            }
+            in.readLong();
+            int overallPopularity = in.readInt();
+            List<String> words = new ArrayList<>();
+            int[] popularities = new int[64];
+            char[] word = new char[64];
+            int length;
+            while ((length = in.readInt()) >= 0) {
+                if (word.length < length) {
+                    word = new char[Math.max(length, 2 * word.length)];
+                }
+                for (int i = 0; i < length; i++) {
+                    word[i] = in.readChar();
+                }
+                if (words.size() == popularities.length) {
+                    popularities = Arrays.copyOf(popularities, 2 * popularities.length);
+                }
+                popularities[words.size()] = in.readInt();
+                words.add(new String(word, 0, length));
+            }
+            ConcurrentDictionaryTree tree = ConcurrentDictionaryTree.build(words, popularities);
+            tree.setOverallPopularity(overallPopularity);
+            return tree;
+        }
+    }
+
+    /**
+     * @return the sequence numbers in the names of the files in the
+     * directory with the given prefix and suffix, in ascending order
+     */
+    private static long[] sequences(File directory, String prefix, String suffix) {
+        String[] names = directory.list();
+        long[] sequences = new long[names == null ? 0 : names.length];
+        int count = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            if (names[i].startsWith(prefix) && names[i].endsWith(suffix)) {
+                try {
+                    sequences[count] = Long.parseLong(
+                            names[i].substring(prefix.length(), names[i].length() - suffix.length()));
+                    ++count;
+                }
+                catch (NumberFormatException e) {
+                    // not one of the journal's files
+                }
+            }
+        }
+        sequences = Arrays.copyOf(sequences, count);
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    private static String name(String prefix, long sequence, String suffix) {
+        return String.format("%s%020d%s", prefix, sequence, suffix);
+    }
+
+    /**
+     * Syncs the directory itself, so files created, renamed or deleted in
+     * it survive a crash. Not every platform can open a directory, in
+     * which case the files are left to the file system.
+     */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            // directories cannot be opened on this platform
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what the dictionary's operations do, for monitoring a running
+ * dictionary through JMX.
+ *
+ * Measuring is off unless the dictionary.metrics system property is
+ * true or it is turned on through the MXBean. The dictionary checks the
+ * volatile enabled flag before measuring anything, so while it is off
+ * an operation costs one extra read. While it is on, latencies are kept
+ * in histograms with a bucket per power of two nanoseconds, so reported
+ * percentiles are accurate to within a factor of two. Every count is a
+ * LongAdder so that threads measuring at once do not contend.
+ */
+public class DictionaryMetrics implements DictionaryMetricsMXBean {
+
+    /**
+     * The name the metrics are registered under with the platform MBean server
+     */
+    static final String OBJECT_NAME = "WordPredictor:type=DictionaryMetrics";
+
+    static final DictionaryMetrics INSTANCE = new DictionaryMetrics();
+
+    /**
+     * Whether operations are being measured, read by the dictionary before
+     * it measures anything
+     */
+    static volatile boolean enabled = Boolean.getBoolean("dictionary.metrics");
+
+    private final Histogram inserts = new Histogram();
+    private final Histogram contains = new Histogram();
+    private final Histogram predicts = new Histogram();
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder candidatesExamined = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private DictionaryMetrics() {
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, unless they
+     * have been registered already.
+     *
+     * @throws JMException if the metrics could not be registered
+     */
+    static synchronized void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(INSTANCE, name);
+        }
+    }
+
+    void recordInsert(long nanos) {
+        inserts.record(nanos);
+    }
+
+    void recordContains(long nanos) {
+        contains.record(nanos);
+    }
+
+    /**
+     * @param nanos how long the predict() call took
+     * @param visited the number of nodes visited on the way down to the prefix
+     */
+    void recordPredict(long nanos, int visited) {
+        predicts.record(nanos);
+        nodesVisited.add(visited);
+    }
+
+    /**
+     * @param visited the number of nodes visited below the prefix
+     * @param examined the number of words examined below the prefix
+     * @param cacheHit whether the prediction was read from the prefix's cache
+     */
+    void recordPredictWalk(int visited, int examined, boolean cacheHit) {
+        nodesVisited.add(visited);
+        candidatesExamined.add(examined);
+        (cacheHit ? cacheHits : cacheMisses).increment();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        DictionaryMetrics.enabled = enabled;
+    }
+
+    @Override
+    public Latency getInsertLatency() {
+        return inserts.latency();
+    }
+
+    @Override
+    public Latency getContainsLatency() {
+        return contains.latency();
+    }
+
+    @Override
+    public Latency getPredictLatency() {
+        return predicts.latency();
+    }
+
+    @Override
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    @Override
+    public double getNodesVisitedPerPredict() {
+        long count = predicts.count();
+        return count == 0 ? 0 : (double) nodesVisited.sum() / count;
+    }
+
+    @Override
+    public long getCandidatesExamined() {
+        return candidatesExamined.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public void reset() {
+        inserts.reset();
+        contains.reset();
+        predicts.reset();
+        nodesVisited.reset();
+        candidatesExamined.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+    /**
+     * A histogram of latencies with a bucket for every power of two
+     * nanoseconds, bucket i counting the latencies below 2^i
+     */
+    private static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+            max.accumulate(nanos);
+        }
+
+        private long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        private void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            max.reset();
+        }
+
+        private Latency latency() {
+            long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            return new Latency(count, percentile(counts, count, 0.5), percentile(counts, count, 0.9),
+                    percentile(counts, count, 0.99), max.get());
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the given percentile
+         */
+        private static long percentile(long[] counts, long count, double percentile) {
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return i == 0 ? 0 : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * A summary of the latencies of one kind of operation, shown by JMX
+     * clients as a composite of its properties
+     */
+    public static final class Latency {
+        private final long count;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+
+        private Latency(long count, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * The management interface of DictionaryMetrics, through which JMX
+ * clients such as jconsole can read the dictionary's operation metrics
+ * and turn their collection on and off.
+ */
+public interface DictionaryMetricsMXBean {
+
+    /**
+     * @return whether operations are currently being measured
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns the measuring of operations on or off. While it is off, the
+     * dictionary's operations only pay for reading one volatile flag.
+     *
+     * @param enabled whether operations should be measured
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the latencies of the words inserted while enabled
+     */
+    DictionaryMetrics.Latency getInsertLatency();
+
+    /**
+     * @return the latencies of the contains() calls made while enabled
+     */
+    DictionaryMetrics.Latency getContainsLatency();
+
+    /**
+     * @return the latencies of the predict() calls made while enabled
+     */
+    DictionaryMetrics.Latency getPredictLatency();
+
+    /**
+     * @return the number of nodes visited by predict() calls, both on the
+     * way down to the prefix and below it
+     */
+    long getNodesVisited();
+
+    /**
+     * @return the average number of nodes visited per predict() call
+     */
+    double getNodesVisitedPerPredict();
+
+    /**
+     * @return the number of words examined while walking the subtree below
+     * a prefix for predictions that the node caches could not answer
+     */
+    long getCandidatesExamined();
+
+    /**
+     * @return the number of predictions answered from a node's cache of
+     * most popular words
+     */
+    long getCacheHits();
+
+    /**
+     * @return the number of predictions that needed a walk of the subtree
+     * below the prefix, as they asked for more words than are cached
+     */
+    long getCacheMisses();
+
+    /**
+     * Sets every count and histogram back to zero.
+     */
+    void reset();
+
+}
@@ -0,0 +1,307 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * A read-only dictionary answered straight from a memory-mapped binary
+ * snapshot written by DictionaryTree.save(), so opening it does not
+ * rebuild any nodes and every process opening the same file shares
+ * the same pages of the operating system's file cache.
+ *
+ * The file starts with a header of five ints: the magic number, the
+ * format version, the size of the cache of most popular words, the
+ * number of nodes and the offset of the root node. The rest of the file
+ * holds word records and node records, each node written after all of
+ * its descendants so that every offset points backwards.
+ * A word record is its rank as it was when the snapshot was written (its
+ * popularity less the lift of its recent selections, as a double), its
+ * popularity, its length and then its characters.
+ * A node record is the offset of the word ending there (or -1), the
+ * number of children, the number of cached words, the offsets of the
+ * cached words and then a (letter, offset) pair per child, sorted by
+ * letter so that children can be binary searched.
+ */
+public class DictionarySnapshot {
+
+    static final int MAGIC = 0x57505344;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final int NO_WORD = -1;
+
+    private final ByteBuffer buffer;
+    private final int cacheSize;
+    private final int size;
+    private final int root;
+
+    private DictionarySnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("not a dictionary snapshot");
+        }
+        cacheSize = buffer.getInt(8);
+        size = buffer.getInt(12);
+        root = buffer.getInt(16);
+    }
+
+    /**
+     * Memory-maps a snapshot written by DictionaryTree.save().
+     *
+     * @param f the snapshot file
+     * @return the dictionary stored in the snapshot
+     * @throws IOException if there was a problem opening/mapping the file
+     */
+    static DictionarySnapshot open(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DictionarySnapshot(buffer);
+        }
+    }
+
+    /**
+     * Writes the given dictionary to a snapshot file.
+     *
+     * @param tree the dictionary to write
+     * @param f the file the snapshot is written to
+     * @param cacheSize the number of most popular words cached at each node
+     * @throws IOException if there was a problem writing to the file
+     */
+    static void write(DictionaryTree tree, File f, int cacheSize) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(cacheSize);
+            out.writeInt(tree.size());
+            out.writeInt(0);
+            int root = writeHelper(tree, out, new IdentityHashMap<>());
+            out.flush();
+            try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, root), 16);
+            }
+        }
+    }
+
+
+    /**
+     * Helper method for write()
+     * Recursively writes the children of a node
+     * before the node itself, remembering where
+     * each word was written so that the cached
+     * words of the ancestors can refer to it
+     *
+     * @param tree The node to write
+     * @param out The stream the snapshot is written to
+     * @param wordOffsets The offsets of the words written so far
+     * @return The offset of the node's record
+     */
+    private static int writeHelper(DictionaryTree tree, DataOutputStream out,
+                                   Map<DictionaryTree, Integer> wordOffsets) throws IOException {
+        List<Character> letters = new ArrayList<>(tree.children().keySet());
+        Collections.sort(letters);
+        int[] childOffsets = new int[letters.size()];
+        for (int i = 0; i < letters.size(); i++) {
+            childOffsets[i] = writeHelper(tree.child(letters.get(i)), out, wordOffsets);
+        }
+
+        int wordOffset = NO_WORD;
+        if (tree.isWord()) {
+            wordOffset = out.size();
+            out.writeDouble(tree.rank());
+            out.writeInt(tree.popularity());
+            out.writeInt(tree.word().length());
+            out.writeChars(tree.word());
+            wordOffsets.put(tree, wordOffset);
+        }
+
+        int offset = out.size();
+        List<DictionaryTree> cached = tree.cachedWords();
+        out.writeInt(wordOffset);
+        out.writeInt(letters.size());
+        out.writeInt(cached.size());
+        for (DictionaryTree node : cached) {
+            out.writeInt(wordOffsets.get(node));
+        }
+        for (int i = 0; i < letters.size(); i++) {
+            out.writeInt(letters.get(i));
+            out.writeInt(childOffsets[i]);
+        }
+        return offset;
+    }
+
+    /**
+     * @return the number of nodes in this dictionary
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this dictionary; false otherwise
+     */
+    boolean contains(String word) {
+        int node = find(word);
+        return node != NO_WORD && buffer.getInt(node) != NO_WORD;
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        List<String> words = predict(prefix, 1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        List<String> words = new ArrayList<>();
+        int node = find(prefix);
+        if (node == NO_WORD) {
+            return words;
+        }
+        int cached = buffer.getInt(node + 8);
+        if (n <= cached || cached < cacheSize) {
+            for (int i = 0; i < n && i < cached; i++) {
+                words.add(readWord(buffer.getInt(node + 12 + 4 * i)));
+            }
+        }
+        else {
+            for (int word : predictHelper(node, n)) {
+                words.add(readWord(word));
+            }
+        }
+        return words;
+    }
+
+
+    /**
+     * Helper method for predict()
+     * Walks the subtree below a node keeping the
+     * best n words seen so far in a heap, skipping
+     * any child whose best ranked word could not
+     * make it into the heap
+     *
+     * @param start The node at the end of the prefix
+     * @param n The maximum number of words to predict
+     * @return The offsets of the predicted words, most popular first
+     */
+    private List<Integer> predictHelper(int start, int n) {
+        PriorityQueue<Integer> best = new PriorityQueue<>((a, b) -> compareWords(b, a));
+        ArrayList<Integer> toVisit = new ArrayList<>();
+        toVisit.add(start);
+        while (!toVisit.isEmpty()) {
+            int node = toVisit.remove(toVisit.size() - 1);
+            int word = buffer.getInt(node);
+            if (word != NO_WORD && (best.size() < n || compareWords(word, best.peek()) < 0)) {
+                if (best.size() == n) {
+                    best.poll();
+                }
+                best.add(word);
+            }
+            int children = buffer.getInt(node + 4);
+            int childTable = node + 12 + 4 * buffer.getInt(node + 8);
+            for (int i = 0; i < children; i++) {
+                int child = buffer.getInt(childTable + 8 * i + 4);
+                int childBest = buffer.getInt(child + 12);
+                if (best.size() < n || compareWords(childBest, best.peek()) < 0) {
+                    toVisit.add(child);
+                }
+            }
+        }
+        List<Integer> words = new ArrayList<>(best);
+        words.sort(this::compareWords);
+        return words;
+    }
+
+    /**
+     * Walks down the snapshot one letter of the prefix at a time,
+     * binary searching the sorted children of each node.
+     *
+     * @param prefix the prefix to look up
+     * @return the offset of the node at the end of the prefix, or -1 if no word starts with it
+     */
+    private int find(String prefix) {
+        int node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            char letter = prefix.charAt(i);
+            int childTable = node + 12 + 4 * buffer.getInt(node + 8);
+            int low = 0;
+            int high = buffer.getInt(node + 4) - 1;
+            node = NO_WORD;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int label = buffer.getInt(childTable + 8 * mid);
+                if (label < letter) {
+                    low = mid + 1;
+                }
+                else if (label > letter) {
+                    high = mid - 1;
+                }
+                else {
+                    node = buffer.getInt(childTable + 8 * mid + 4);
+                    break;
+                }
+            }
+            if (node == NO_WORD) {
+                return NO_WORD;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Orders two word records the same way DictionaryTree ranks its words:
+     * by rank (lower first), then by popularity and then alphabetically.
+     */
+    private int compareWords(int a, int b) {
+        int byRank = Double.compare(buffer.getDouble(a), buffer.getDouble(b));
+        if (byRank != 0) {
+            return byRank;
+        }
+        int byPopularity = Integer.compare(buffer.getInt(a + 8), buffer.getInt(b + 8));
+        if (byPopularity != 0) {
+            return byPopularity;
+        }
+        int lengthA = buffer.getInt(a + 12);
+        int lengthB = buffer.getInt(b + 12);
+        for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+            int byLetter = Character.compare(buffer.getChar(a + 16 + 2 * i), buffer.getChar(b + 16 + 2 * i));
+            if (byLetter != 0) {
+                return byLetter;
+            }
+        }
+        return Integer.compare(lengthA, lengthB);
+    }
+
+    private String readWord(int offset) {
+        char[] letters = new char[buffer.getInt(offset + 12)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = buffer.getChar(offset + 16 + 2 * i);
+        }
+        return new String(letters);
+    }
+
+}
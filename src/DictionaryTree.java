@@ -1,14 +1,117 @@
 import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class DictionaryTree {
 
+    /**
+     * The number of most popular descendant words cached at every node
+     */
+    private static final int CACHE_SIZE = 10;
+
+    /**
+     * The number of nodes a subtree must have to be folded as a separate task
+     */
+    private static final int FOLD_CUTOFF = 4096;
+
+    /**
+     * How long it takes by default for a selection to lift a word half as far
+     */
+    private static final long DEFAULT_SELECTION_HALF_LIFE = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * How many places a new selection lifts a word by default
+     */
+    private static final int DEFAULT_SELECTION_BOOST = 1000;
+
+    /**
+     * Orders end-of-word nodes from most to least popular by their rank,
+     * their popularity less the lift their selections give them (lower
+     * first), then by popularity, breaking ties alphabetically so
+     * predictions are deterministic
+     */
+    private static final Comparator<DictionaryTree> RANKING =
+            Comparator.comparingDouble(DictionaryTree::rank)
+                    .thenComparingInt(tree -> tree.popularity)
+                    .thenComparing(tree -> tree.word);
+
+    /**
+     * The selections recorded in one dictionary, shared by all of its nodes.
+     * Every selected word's lift is measured at the same reference time, so
+     * words are ranked against each other consistently however long ago
+     * they were selected.
+     */
+    private static final class Selections {
+        private final double decay;
+        private final int boost;
+        private final long refreshMillis;
+        private final Set<DictionaryTree> selected = new HashSet<>();
+        private long rankedAt;
+
+        /**
+         * @param halfLifeMillis how long it takes for a selection to lift a word half as far
+         * @param boost how many places a selection lifts a word when it is made
+         */
+        private Selections(long halfLifeMillis, int boost) {
+            this.decay = Math.log(2) / halfLifeMillis;
+            this.boost = boost;
+            this.refreshMillis = halfLifeMillis / 16;
+        }
+
+        /**
+         * @param score the log of the weight of a word's selections
+         * @return how many places the selections lift the word at the reference time
+         */
+        private double lift(double score) {
+            return boost * Math.exp(score - decay * rankedAt);
+        }
+    }
+
+    private final Selections selections;
     private Map<Character, DictionaryTree> children = new LinkedHashMap<>();
     private boolean endOfWord = false;
     private static int overallPopularity = 1;
     private int popularity;
+    private String word;
+    private double selectionScore = Double.NEGATIVE_INFINITY;
+    private double selectionLift;
+    private ArrayList<DictionaryTree> topWords = new ArrayList<>();
+    private int subtreeSize = 1;
+    private int height = 0;
+    private int numLeaves = 1;
+    private int maxBranching = 0;
+    private DictionaryTree deepest = this;
+    private DictionaryTree parent;
+
+    /**
+     * Creates an empty dictionary in which a selection lifts a word by a
+     * thousand places, half as far a week later.
+     */
+    DictionaryTree() {
+        this(DEFAULT_SELECTION_HALF_LIFE, DEFAULT_SELECTION_BOOST);
+    }
+
+    /**
+     * Creates an empty dictionary with the given weighting of selections.
+     *
+     * @param selectionHalfLifeMillis how long it takes for a selection to lift a word half as far
+     * @param selectionBoost how many places a selection lifts a word when it is made
+     */
+    DictionaryTree(long selectionHalfLifeMillis, int selectionBoost) {
+        this(new Selections(selectionHalfLifeMillis, selectionBoost));
+    }
+
+    private DictionaryTree(Selections selections) {
+        this.selections = selections;
+    }
 
     /**
      * Inserts the given word into this dictionary.
@@ -16,38 +119,221 @@ public class DictionaryTree {
      *
      * @param word the word to insert
      */
-    void insert(String word) {
-        insertHelper(word, overallPopularity, this);
-        ++overallPopularity;
+    void insert(CharSequence word) {
+        insertHelper(word, null, 0, word.length(), nextPopularity());
+    }
+
+    /**
+     * Takes the popularity for a word inserted without one, so that the
+     * next word inserted without one ranks below it. Dictionaries layered
+     * over a DictionaryTree take their popularities from here too.
+     *
+     * @return the popularity for the word
+     */
+    static int nextPopularity() {
+        return overallPopularity++;
+    }
+
+    /**
+     * Inserts the word held in the given slice of a character array into
+     * this dictionary, without the caller having to make a String of it.
+     *
+     * @param chars  the array holding the word
+     * @param offset the index of the first character of the word
+     * @param length the number of characters in the word
+     */
+    void insert(char[] chars, int offset, int length) {
+        insertHelper(null, chars, offset, length, nextPopularity());
     }
 
 
     /**
      * Helper method for insert()
-     * Recursively adds the characters from the word to maps
+     * Walks down the tree adding any missing nodes,
+     * then walks back up through the parents to
+     * update the structural statistics and the
+     * cached top words. The word is read either
+     * from the character sequence or, if that is
+     * null, from the character array, so nothing
+     * but the new nodes and the new word itself
+     * is allocated
      *
-     * @param word The word to be inserted
-     * @param tree The tree to operate on
+     * @param word The word to be inserted, or null to read it from chars
+     * @param chars The array holding the word when word is null
+     * @param offset The index of the first character of the word
+     * @param length The number of characters in the word
+     * @param newPopularity The popularity given to the word
+     * @return The end-of-word node of the inserted word
      */
-    private void insertHelper(String word, int newPopularity, DictionaryTree tree) {
-        Optional<String> wordNew = Optional.of(word);
-        if (!(word.equals(""))) {
-            Character letter = word.charAt(0);
-            DictionaryTree letterChildren;
-            if (tree.children.containsKey(letter)) {
-                letterChildren = tree.children.get(letter);
+    private DictionaryTree insertHelper(CharSequence word, char[] chars, int offset, int length, int newPopularity) {
+        long start = DictionaryMetrics.enabled ? System.nanoTime() : 0;
+        DictionaryTree tree = this;
+        DictionaryTree branch = null;
+        boolean newLeaf = false;
+        for (int i = 0; i < length; i++) {
+            char letter = chars == null ? word.charAt(offset + i) : chars[offset + i];
+            DictionaryTree child = tree.children.get(letter);
+            if (child == null) {
+                if (branch == null) {
+                    newLeaf = !tree.children.isEmpty();
+                }
+                child = new DictionaryTree(selections);
+                child.parent = tree;
+                tree.children.put(letter, child);
+                if (branch == null) {
+                    branch = child;
+                }
             }
-            else {
-                letterChildren = new DictionaryTree();
+            tree = child;
+        }
+
+        DictionaryTree inserted = tree;
+        if (!inserted.endOfWord) {
+            inserted.endOfWord = true;
+            inserted.word = chars == null ? word.toString() : new String(chars, offset, length);
+        }
+        inserted.popularity = newPopularity;
+
+        if (branch != null) {
+            int depth = 0;
+            for (tree = inserted; tree != branch; tree = tree.parent) {
+                tree.subtreeSize = depth + 1;
+                tree.height = depth;
+                tree.maxBranching = depth == 0 ? 0 : 1;
+                tree.deepest = inserted;
+                ++depth;
             }
-            tree.children.put(letter, letterChildren);
-            insertHelper(word.substring(1), newPopularity, letterChildren);
+            branch.subtreeSize = depth + 1;
+            branch.height = depth;
+            branch.maxBranching = depth == 0 ? 0 : 1;
+            branch.deepest = inserted;
 
+            int oldHeight = branch.height;
+            DictionaryTree oldDeepest = branch.deepest;
+            for (DictionaryTree child = branch; child != this; child = child.parent) {
+                tree = child.parent;
+                int treeHeight = tree.height;
+                DictionaryTree treeDeepest = tree.deepest;
+                tree.growStats(child, oldHeight, oldDeepest, depth + 1, newLeaf ? 1 : 0);
+                oldHeight = treeHeight;
+                oldDeepest = treeDeepest;
+            }
         }
-        else {
-            tree.endOfWord = true;
-            tree.popularity = newPopularity;
+        cachePath(inserted);
+        if (start != 0) {
+            DictionaryMetrics.INSTANCE.recordInsert(System.nanoTime() - start);
+        }
+        return inserted;
+    }
+
+    /**
+     * Updates this node's structural statistics after one of its children
+     * has grown by the given number of nodes, without looking at the
+     * other children. A new branch is always the last child, so it only
+     * becomes the deepest branch by being strictly deeper; an existing
+     * child that has grown to tie with the deepest branch may or may not
+     * come first, so only then are the statistics recomputed in full.
+     *
+     * @param child       the child that has grown
+     * @param oldHeight   the height of the child before it grew
+     * @param oldDeepest  the deepest node of the child before it grew
+     * @param addedNodes  the number of nodes added below this node
+     * @param addedLeaves the number of leaves added below this node
+     */
+    private void growStats(DictionaryTree child, int oldHeight, DictionaryTree oldDeepest,
+                           int addedNodes, int addedLeaves) {
+        subtreeSize += addedNodes;
+        numLeaves += addedLeaves;
+        maxBranching = Math.max(maxBranching, Math.max(children.size(), child.maxBranching));
+        if (child.height + 1 > height) {
+            height = child.height + 1;
+            deepest = child.deepest;
+        }
+        else if (child.height + 1 == height && deepest != child.deepest) {
+            if (deepest == oldDeepest) {
+                deepest = child.deepest;
+            }
+            else if (child.height > oldHeight) {
+                refreshStats();
+            }
+        }
+    }
+
+    /**
+     * Places an inserted or re-ranked word into the cache of every
+     * node from the word's own node up to this one, children first
+     *
+     * @param node The end-of-word node that has changed
+     */
+    private void cachePath(DictionaryTree node) {
+        for (DictionaryTree tree = node; tree != this; tree = tree.parent) {
+            tree.cacheWord(node);
+        }
+        cacheWord(node);
+    }
+
+    /**
+     * Places an inserted or re-ranked word into this node's cache
+     * of most popular descendant words.
+     * The cache only has to be rebuilt from the children when the
+     * word was already cached and has dropped to the last position,
+     * as a word outside the cache might now rank above it.
+     *
+     * @param node The end-of-word node that has changed
+     */
+    private void cacheWord(DictionaryTree node) {
+        boolean wasCached = topWords.remove(node);
+        boolean wasFull = wasCached && topWords.size() == CACHE_SIZE - 1;
+        int index = Collections.binarySearch(topWords, node, RANKING);
+        index = index < 0 ? -(index + 1) : index;
+        if (wasFull && index == topWords.size()) {
+            rebuildCache();
+        }
+        else if (index < CACHE_SIZE) {
+            topWords.add(index, node);
+            if (topWords.size() > CACHE_SIZE) {
+                topWords.remove(CACHE_SIZE);
+            }
+        }
+    }
 
+    /**
+     * Removes a deleted word from this node's cache of most popular
+     * descendant words, rebuilding the cache from the children if
+     * another word may need to take its place.
+     *
+     * @param node The end-of-word node that has been removed
+     */
+    private void uncacheWord(DictionaryTree node) {
+        if (topWords.remove(node) && topWords.size() == CACHE_SIZE - 1) {
+            rebuildCache();
+        }
+    }
+
+    /**
+     * Rebuilds this node's cache of most popular descendant words by
+     * merging its own word with the caches of its children.
+     * The cache is refilled in place, and as each child's cache is
+     * already sorted, a child is left as soon as one of its words
+     * does not make it into the cache.
+     */
+    private void rebuildCache() {
+        topWords.clear();
+        if (endOfWord) {
+            topWords.add(this);
+        }
+        for (DictionaryTree child : children.values()) {
+            for (int i = 0; i < child.topWords.size(); i++) {
+                DictionaryTree candidate = child.topWords.get(i);
+                int index = -(Collections.binarySearch(topWords, candidate, RANKING) + 1);
+                if (index >= CACHE_SIZE) {
+                    break;
+                }
+                topWords.add(index, candidate);
+                if (topWords.size() > CACHE_SIZE) {
+                    topWords.remove(CACHE_SIZE);
+                }
+            }
         }
     }
 
@@ -59,7 +345,192 @@ public class DictionaryTree {
      * @param popularity the popularity of the inserted word
      */
     void insert(String word, int popularity) {
-        insertHelper(word, popularity, this);
+        insertHelper(word, null, 0, word.length(), popularity);
+    }
+
+    /**
+     * Inserts the word held in the given slice of a character array into
+     * this dictionary with the given popularity, as insert(String, int) does.
+     *
+     * @param chars      the array holding the word
+     * @param offset     the index of the first character of the word
+     * @param length     the number of characters in the word
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(char[] chars, int offset, int length, int popularity) {
+        insertHelper(null, chars, offset, length, popularity);
+    }
+
+    /**
+     * Builds a dictionary from a list of words in one go, as if each word
+     * had been passed to insert() in order, so each word's popularity comes
+     * from its position in the list.
+     * The words are split into shards by their first letter and each shard
+     * is built on its own in the common fork-join pool before being
+     * attached under the root.
+     *
+     * @param words the words to insert, most popular first
+     * @return the dictionary holding the given words
+     */
+    static DictionaryTree build(List<String> words) {
+        return build(words, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a dictionary from a list of words in one go, as if each word
+     * had been passed to insert() in order, building the shards for each
+     * first letter in parallel on the given pool.
+     *
+     * @param words the words to insert, most popular first
+     * @param pool the pool the shards are built on
+     * @return the dictionary holding the given words
+     */
+    static DictionaryTree build(List<String> words, ForkJoinPool pool) {
+        int firstPopularity = overallPopularity;
+        overallPopularity += words.size();
+
+        DictionaryTree tree = new DictionaryTree();
+        LinkedHashMap<Character, List<Integer>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (word.equals("")) {
+                tree.insertHelper(word, null, 0, 0, firstPopularity + i);
+            }
+            else {
+                shards.computeIfAbsent(word.charAt(0), letter -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<RecursiveTask<DictionaryTree>> tasks = new ArrayList<>();
+        for (List<Integer> shard : shards.values()) {
+            tasks.add(new RecursiveTask<DictionaryTree>() {
+                @Override
+                protected DictionaryTree compute() {
+                    DictionaryTree shardRoot = new DictionaryTree(tree.selections);
+                    for (int i : shard) {
+                        String word = words.get(i);
+                        shardRoot.insertHelper(word, null, 0, word.length(), firstPopularity + i);
+                    }
+                    return shardRoot.children.values().iterator().next();
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        Iterator<RecursiveTask<DictionaryTree>> shardTrees = tasks.iterator();
+        for (Character letter : shards.keySet()) {
+            DictionaryTree shardTree = shardTrees.next().join();
+            tree.children.put(letter, shardTree);
+            shardTree.parent = tree;
+        }
+        tree.refreshStats();
+        tree.rebuildCache();
+        return tree;
+    }
+
+    /**
+     * Records that the given word was picked by a user, lifting it above
+     * words that have been picked less often or less recently.
+     *
+     * @param word the word that was picked
+     * @return true if the word is in this dictionary; false otherwise
+     */
+    boolean recordSelection(String word) {
+        return recordSelection(word, System.currentTimeMillis());
+    }
+
+    /**
+     * Records that the given word was picked by a user at the given time.
+     * A selection lifts the word's rank by the dictionary's selection boost
+     * when it is made, and by half as much every half-life after that, so a
+     * word that stops being picked sinks back to the rank its popularity
+     * gives it. Scores are kept as the log of the sum of e^(decay * time)
+     * over the selections, so they never overflow, and every lift is
+     * measured at the same reference time, which ageSelections() moves on.
+     *
+     * @param word the word that was picked
+     * @param timeMillis when the word was picked, in milliseconds since the epoch
+     * @return true if the word is in this dictionary; false otherwise
+     */
+    boolean recordSelection(String word, long timeMillis) {
+        ageSelections(timeMillis);
+        DictionaryTree node = find(word);
+        if (node == null || !node.endOfWord) {
+            return false;
+        }
+        double weight = selections.decay * timeMillis;
+        double score = node.selectionScore;
+        if (score == Double.NEGATIVE_INFINITY) {
+            node.selectionScore = weight;
+        }
+        else {
+            node.selectionScore = Math.max(score, weight) + Math.log1p(Math.exp(-Math.abs(score - weight)));
+        }
+        node.selectionLift = selections.lift(node.selectionScore);
+        selections.selected.add(node);
+        cachePath(node);
+        return true;
+    }
+
+    /**
+     * Moves the time at which selections are weighed on to the given time,
+     * so that words selected a while ago sink back towards the rank their
+     * popularity gives them. The words are only re-ranked once the time has
+     * moved on by a sixteenth of a half-life, so a lift is never more than
+     * about 4% out of date. A lift of less than one place could only put a
+     * word ahead of words of the same popularity, so such selections are
+     * forgotten.
+     *
+     * @param nowMillis the current time, in milliseconds since the epoch
+     * @return the words whose rank has changed
+     */
+    List<String> ageSelections(long nowMillis) {
+        List<String> reranked = new ArrayList<>();
+        if (nowMillis - selections.rankedAt < selections.refreshMillis) {
+            return reranked;
+        }
+        selections.rankedAt = nowMillis;
+        List<DictionaryTree> changed = new ArrayList<>(selections.selected);
+        for (DictionaryTree node : changed) {
+            reranked.add(node.word);
+            node.selectionLift = selections.lift(node.selectionScore);
+            if (node.selectionLift < 1) {
+                node.selectionScore = Double.NEGATIVE_INFINITY;
+                node.selectionLift = 0;
+                selections.selected.remove(node);
+            }
+        }
+        rebuildCaches(changed);
+        return reranked;
+    }
+
+    /**
+     * Rebuilds the cache of every node from the given end-of-word nodes up
+     * to the root, deepest first, so each is rebuilt from up to date caches.
+     *
+     * @param nodes the end-of-word nodes whose rank has changed
+     */
+    private static void rebuildCaches(List<DictionaryTree> nodes) {
+        HashMap<DictionaryTree, Integer> depths = new HashMap<>();
+        for (DictionaryTree node : nodes) {
+            int depth = 0;
+            for (DictionaryTree tree = node.parent; tree != null; tree = tree.parent) {
+                ++depth;
+            }
+            for (DictionaryTree tree = node; tree != null && !depths.containsKey(tree); tree = tree.parent) {
+                depths.put(tree, depth--);
+            }
+        }
+        List<DictionaryTree> stale = new ArrayList<>(depths.keySet());
+        stale.sort(Comparator.comparingInt((DictionaryTree tree) -> -depths.get(tree)));
+        for (DictionaryTree tree : stale) {
+            tree.rebuildCache();
+        }
     }
 
     /**
@@ -71,46 +542,104 @@ public class DictionaryTree {
      * @param word the word to delete from this dictionary
      * @return whether or not the parent can delete this node from its children
      */
-    boolean remove(String word) {
-        if (contains(word)) {
-            return removeHelper(word, false, this);
-        }
-        else {
-            return false;
-        }
+    boolean remove(CharSequence word) {
+        return removeHelper(word, null, 0, word.length());
+    }
+
+    /**
+     * Removes the word held in the given slice of a character array
+     * from this dictionary, as remove(CharSequence) does.
+     *
+     * @param chars  the array holding the word
+     * @param offset the index of the first character of the word
+     * @param length the number of characters in the word
+     * @return whether or not the parent can delete this node from its children
+     */
+    boolean remove(char[] chars, int offset, int length) {
+        return removeHelper(null, chars, offset, length);
     }
 
 
     /**
      *
      * Helper method for remove()
-     * Recursively travels down the branches
-     * of the tree using the letters from the
-     * word, and if the nodes have no
-     * children then the node is deleted
-     *
-     * @param word The word to be removed
-     * @param cleanRemove Whether the word could be cleanly deleted
-     * @param tree The tree to operate on
-     * @return A boolean for whether the word was cleanly removed or not
-     */
-    private boolean removeHelper(String word, boolean cleanRemove, DictionaryTree tree) {
-        Optional<String> wordNew = Optional.of(word);
-        if (!(word.equals(""))) {
-            Character c = word.charAt(0);
-            if (tree.children.get(c).children.isEmpty()) {
-                tree.children.remove(c);
-                	cleanRemove = true;
+     * Finds the node at which the word ends and
+     * unmarks it, deletes any nodes left with no
+     * children and no word on the way up, then
+     * walks up the rest of the parents dropping
+     * the word from the cached top words. A node's
+     * structural statistics are only recomputed
+     * from all of its children if its deepest
+     * branch or widest node may have gone
+     *
+     * @param word The word to be removed, or null to read it from chars
+     * @param chars The array holding the word when word is null
+     * @param offset The index of the first character of the word
+     * @param length The number of characters in the word
+     * @return whether or not the parent can delete this node from its children
+     */
+    private boolean removeHelper(CharSequence word, char[] chars, int offset, int length) {
+        DictionaryTree removed = find(word, chars, offset, length);
+        if (removed == null || !removed.endOfWord) {
+            return false;
+        }
+        removed.endOfWord = false;
+        removed.word = null;
+        removed.selectionScore = Double.NEGATIVE_INFINITY;
+        removed.selectionLift = 0;
+        selections.selected.remove(removed);
+
+        DictionaryTree tree = removed;
+        int prunedNodes = 0;
+        for (int depth = length; tree != this && tree.children.isEmpty() && !tree.endOfWord; depth--) {
+            char letter = chars == null ? word.charAt(offset + depth - 1) : chars[offset + depth - 1];
+            tree.parent.children.remove(letter);
+            tree = tree.parent;
+            ++prunedNodes;
+        }
+        DictionaryTree survivor = tree;
+
+        if (prunedNodes > 0) {
+            int lostLeaves = survivor.children.isEmpty() ? 0 : 1;
+            DictionaryTree child = removed;
+            while (child.parent != survivor) {
+                child = child.parent;
             }
-            else {
-                cleanRemove = false;
-                if (word.length() == 1) {
-                    tree.children.get(c).endOfWord = false;
+            boolean pruned = true;
+            int oldHeight = child.height;
+            DictionaryTree oldDeepest = child.deepest;
+            int oldMaxBranching = child.maxBranching;
+            for (tree = survivor; ; tree = tree.parent) {
+                int treeHeight = tree.height;
+                DictionaryTree treeDeepest = tree.deepest;
+                int treeMaxBranching = tree.maxBranching;
+                boolean deepestChanged = pruned || child.height != oldHeight || child.deepest != oldDeepest;
+                boolean branchingShrank = pruned || child.maxBranching < oldMaxBranching;
+                if ((deepestChanged && tree.deepest == oldDeepest)
+                        || (branchingShrank && tree.maxBranching == oldMaxBranching)
+                        || (pruned && tree.maxBranching == tree.children.size() + 1)) {
+                    tree.refreshStats();
+                }
+                else {
+                    tree.subtreeSize -= prunedNodes;
+                    tree.numLeaves -= lostLeaves;
                 }
-                cleanRemove = removeHelper(word.substring(1), cleanRemove, tree.children.get(c));
+                if (tree == this) {
+                    break;
+                }
+                child = tree;
+                pruned = false;
+                oldHeight = treeHeight;
+                oldDeepest = treeDeepest;
+                oldMaxBranching = treeMaxBranching;
             }
         }
-        return cleanRemove;
+
+        for (tree = survivor; tree != this; tree = tree.parent) {
+            tree.uncacheWord(removed);
+        }
+        uncacheWord(removed);
+        return removed.children.isEmpty();
     }
 
     /**
@@ -119,50 +648,129 @@ public class DictionaryTree {
      * @param word the word whose presence will be checked
      * @return true if the specified word is stored in this tree; false otherwise
      */
-    boolean contains(String word) {
-        return containsHelper(word, false, "", this, false);
+    boolean contains(CharSequence word) {
+        long start = DictionaryMetrics.enabled ? System.nanoTime() : 0;
+        DictionaryTree node = find(word, null, 0, word.length());
+        if (start != 0) {
+            DictionaryMetrics.INSTANCE.recordContains(System.nanoTime() - start);
+        }
+        return node != null && node.endOfWord;
+    }
+
+    /**
+     * Determines whether or not the word held in the given slice of a
+     * character array is in this dictionary.
+     *
+     * @param chars  the array holding the word
+     * @param offset the index of the first character of the word
+     * @param length the number of characters in the word
+     * @return true if the word is stored in this tree; false otherwise
+     */
+    boolean contains(char[] chars, int offset, int length) {
+        long start = DictionaryMetrics.enabled ? System.nanoTime() : 0;
+        DictionaryTree node = find(null, chars, offset, length);
+        if (start != 0) {
+            DictionaryMetrics.INSTANCE.recordContains(System.nanoTime() - start);
+        }
+        return node != null && node.endOfWord;
     }
 
 
     /**
      *
-     * Helper method for contains()
-     * Recursively traverses each node of the tree
-     * until a word is created that matches the
-     * selected word
+     * Helper method for contains() and predict()
+     * Walks down the tree one letter of the
+     * prefix at a time, so only the nodes on
+     * the prefix's own path are visited
      *
-     * @param word The word to be checked
-     * @param isContained Whether the word has been found or not
-     * @param currentWord The current word
-     * @param tree The tree to operate on
-     * @return A boolean for whether the word was found or not
+     * @param prefix The prefix to look up
+     * @return The node at the end of the prefix, or null if no word starts with it
      */
-    private boolean containsHelper(String word, boolean isContained, String currentWord, DictionaryTree tree, boolean prefix) {
-        if (tree.children.isEmpty()) {
-            return isContained;
-        }
-        else {
+    private DictionaryTree find(CharSequence prefix) {
+        return find(prefix, null, 0, prefix.length());
+    }
 
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                if (isContained) {
-                    break;
-                }
-                currentWord += entry.getKey();
-                if (currentWord.equals(word)) {
-                    if (prefix) {
-                        isContained = true;
-                    }
-                    else if (!prefix && entry.getValue().endOfWord) {
-                        isContained = true;
-                    }
-                }
-                else {
-                    isContained = containsHelper(word, false, currentWord, entry.getValue(), prefix);
-                }
-                currentWord = currentWord.substring(0, currentWord.length() - 1);
-            }
+    /**
+     * Helper method for find()
+     * Looks up a prefix read either from the
+     * character sequence or, if that is null,
+     * from the character array
+     *
+     * @param prefix The prefix to look up, or null to read it from chars
+     * @param chars The array holding the prefix when prefix is null
+     * @param offset The index of the first character of the prefix
+     * @param length The number of characters in the prefix
+     * @return The node at the end of the prefix, or null if no word starts with it
+     */
+    private DictionaryTree find(CharSequence prefix, char[] chars, int offset, int length) {
+        DictionaryTree tree = this;
+        for (int i = 0; i < length && tree != null; i++) {
+            tree = tree.children.get(chars == null ? prefix.charAt(offset + i) : chars[offset + i]);
         }
-        return isContained;
+        return tree;
+    }
+
+    /**
+     * @param letter the next letter of a prefix
+     * @return the child reached by the given letter, or null if there is none
+     */
+    DictionaryTree child(char letter) {
+        return children.get(letter);
+    }
+
+    /**
+     * @return true if a word ends at this node; false otherwise
+     */
+    boolean isWord() {
+        return endOfWord;
+    }
+
+    /**
+     * @return the word ending at this node, or null if no word ends here
+     */
+    String word() {
+        return word;
+    }
+
+    /**
+     * @return the popularity of the word ending at this node
+     */
+    int popularity() {
+        return popularity;
+    }
+
+    /**
+     * @return the rank of the word ending at this node, its popularity less
+     * the number of places its selections lift it; lower ranks first
+     */
+    double rank() {
+        return popularity - selectionLift;
+    }
+
+    /**
+     * @return a read-only view of this node's children, keyed by letter
+     */
+    Map<Character, DictionaryTree> children() {
+        return Collections.unmodifiableMap(children);
+    }
+
+    /**
+     * @return a read-only view of the cached end-of-word nodes of the most
+     * popular words below this node, most popular first
+     */
+    List<DictionaryTree> cachedWords() {
+        return Collections.unmodifiableList(topWords);
+    }
+
+    /**
+     * Saves this dictionary as a binary snapshot which can be
+     * reopened quickly with DictionarySnapshot.open().
+     *
+     * @param f the file the snapshot is written to
+     * @throws IOException if there was a problem writing to the file
+     */
+    void save(File f) throws IOException {
+        DictionarySnapshot.write(this, f, CACHE_SIZE);
     }
 
     /**
@@ -171,33 +779,131 @@ public class DictionaryTree {
      * if no such word is found.
      */
     Optional<String> predict(String prefix) {
-        if (containsHelper(prefix, false, "", this, true)) {
-            ArrayList<String> words = new ArrayList<>();
-            return Optional.of((predictHelper(prefix, prefix, words, 1, this)).get(0));
+        long start = DictionaryMetrics.enabled ? System.nanoTime() : 0;
+        DictionaryTree node = find(prefix);
+        Optional<String> prediction = node != null && !node.topWords.isEmpty()
+                ? Optional.of(node.topWords.get(0).word)
+                : Optional.empty();
+        if (start != 0) {
+            DictionaryMetrics.INSTANCE.recordPredict(System.nanoTime() - start, nodesVisited(prefix, node));
+            if (node != null) {
+                DictionaryMetrics.INSTANCE.recordPredictWalk(0, 0, true);
+            }
         }
-        else {
-            return Optional.empty();
+        return prediction;
+    }
+
+    /**
+     * Counts the nodes find() visited looking up a prefix, for the metrics.
+     * Only a prefix that is not in the tree has to be walked again.
+     *
+     * @param prefix the prefix that was looked up
+     * @param node the node find() returned for the prefix
+     * @return the number of nodes visited, counting this one
+     */
+    private int nodesVisited(String prefix, DictionaryTree node) {
+        if (node != null) {
+            return prefix.length() + 1;
+        }
+        int visited = 1;
+        for (DictionaryTree tree = child(prefix.charAt(0)); tree != null; tree = tree.child(prefix.charAt(visited - 1))) {
+            ++visited;
         }
+        return visited;
     }
 
 
-    private ArrayList<String> predictHelper(String prefix, String newWord, ArrayList<String> words, int numOfWOrds, DictionaryTree tree) {
-        Optional<String> prefixNew = Optional.of(prefix);
-        if (!(prefix.equals(""))) {
-            Character letter = prefix.charAt(0);
-            predictHelper(prefix.substring(1), newWord, words, numOfWOrds, tree.children.get(letter));
+    /**
+     *
+     * Helper method for predict()
+     * Reads the most popular words below this
+     * node straight from its cache. Requests for
+     * more words than the cache holds fall back
+     * to a single walk of the subtree that keeps
+     * only the best numOfWords words seen so far
+     * in a heap, skipping any branch whose most
+     * popular word could not make it into the heap.
+     * The heap grows only with the words found, so
+     * a huge numOfWords costs no more than the subtree.
+     *
+     * @param numOfWords The maximum number of words to predict
+     * @return The predicted words, most popular first
+     */
+    List<String> predictHelper(int numOfWords) {
+        return predictHelper(numOfWords, null);
+    }
+
+    /**
+     * Helper method for predict()
+     * Predicts as predictHelper(int) does, also
+     * counting the nodes the walk visits for the
+     * metrics
+     *
+     * @param numOfWords The maximum number of words to predict
+     * @param walk Receives the number of nodes visited and of words
+     * examined, or null if they are not wanted
+     * @return The predicted words, most popular first
+     */
+    private List<String> predictHelper(int numOfWords, int[] walk) {
+        List<DictionaryTree> nodes = predictNodes(numOfWords, walk);
+        ArrayList<String> words = new ArrayList<>(nodes.size());
+        for (DictionaryTree node : nodes) {
+            words.add(node.word);
+        }
+        return words;
+    }
+
+    /**
+     * Helper method for predictHelper()
+     * Finds the end-of-word nodes of the most
+     * popular words below this node, as
+     * predictHelper() describes
+     *
+     * @param numOfWords The maximum number of words to predict
+     * @param walk Receives the number of nodes visited and of words
+     * examined, or null if they are not wanted
+     * @return The end-of-word nodes of the predicted words, most popular first
+     */
+    private List<DictionaryTree> predictNodes(int numOfWords, int[] walk) {
+        ArrayList<DictionaryTree> words = new ArrayList<>();
+        int visited = 0;
+        int examined = 0;
+        if (numOfWords <= CACHE_SIZE) {
+            for (int i = 0; i < numOfWords && i < topWords.size(); i++) {
+                words.add(topWords.get(i));
+            }
         }
         else {
-            LinkedHashMap<String, Integer> wordsUnsorted = new LinkedHashMap<>();
-            wordsUnsorted = allWordsHelper(wordsUnsorted, newWord, tree);
-            TreeMap<Integer, String> wordsSorted = new TreeMap<>();
-            for (String word : wordsUnsorted.keySet()) {
-                wordsSorted.put(wordsUnsorted.get(word), word);
+            PriorityQueue<DictionaryTree> best = new PriorityQueue<>(RANKING.reversed());
+            ArrayDeque<DictionaryTree> toVisit = new ArrayDeque<>();
+            toVisit.push(this);
+            while (!toVisit.isEmpty()) {
+                DictionaryTree tree = toVisit.pop();
+                ++visited;
+                if (tree.endOfWord) {
+                    ++examined;
+                    if (best.size() < numOfWords) {
+                        best.add(tree);
+                    }
+                    else if (RANKING.compare(tree, best.peek()) < 0) {
+                        best.poll();
+                        best.add(tree);
+                    }
+                }
+                for (DictionaryTree child : tree.children.values()) {
+                    if (best.size() < numOfWords || RANKING.compare(child.topWords.get(0), best.peek()) < 0) {
+                        toVisit.push(child);
+                    }
+                }
             }
-            for (int i = 0; i < numOfWOrds; i++) {
-                words.add(wordsSorted.firstEntry().getValue());
-                wordsSorted.remove(wordsSorted.firstEntry().getKey());
+            while (!best.isEmpty()) {
+                words.add(best.poll());
             }
+            Collections.reverse(words);
+        }
+        if (walk != null) {
+            walk[0] = visited;
+            walk[1] = examined;
         }
         return words;
     }
@@ -210,217 +916,366 @@ public class DictionaryTree {
      * @return the (at most) n most popular words with the specified prefix
      */
     List<String> predict(String prefix, int n) {
-        ArrayList<String> words = new ArrayList<>();
-        return predictHelper(prefix, prefix, words, n, this);
+        long start = DictionaryMetrics.enabled ? System.nanoTime() : 0;
+        DictionaryTree node = find(prefix);
+        int[] walk = start != 0 && node != null ? new int[2] : null;
+        List<String> words = node == null ? new ArrayList<>() : node.predictHelper(n, walk);
+        if (start != 0) {
+            DictionaryMetrics.INSTANCE.recordPredict(System.nanoTime() - start, nodesVisited(prefix, node));
+            if (walk != null) {
+                DictionaryMetrics.INSTANCE.recordPredictWalk(walk[0], walk[1], n <= CACHE_SIZE);
+            }
+        }
+        return words;
     }
 
     /**
-     * @return the number of leaves in this tree, i.e. the number of words which are
-     * not prefixes of any other word.
+     * Finds the end-of-word nodes of the (at most) n most popular words
+     * based on the specified prefix, for callers which rank these words
+     * against words of their own.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the end-of-word nodes of the (at most) n most popular words
+     * with the specified prefix, most popular first
      */
-    int numLeaves() {
-        return numLeavesHelper(0, this);
+    List<DictionaryTree> predictNodes(String prefix, int n) {
+        DictionaryTree node = find(prefix);
+        return node == null ? new ArrayList<>() : node.predictNodes(n, null);
     }
 
-
     /**
+     * Predicts the (at most) n most popular words for every one of the given
+     * prefixes. The prefixes are sorted so that neighbouring prefixes share
+     * the walk down their common letters, and the prefixes starting with
+     * each letter are answered in parallel on the common fork-join pool.
      *
-     * Helper method for numLeavesHelper()
-     * Recursively traverses each level of each subtree
-     * until it reaches a leaf node and then adds 1
-     * to the counter
-     *
-     * @param count The current number of leaf nodes
-     * @param tree The tree to operate on
-     * @return The number of leaf nodes in the tree
+     * @param prefixes the prefixes of the words found
+     * @param n the maximum number of words to predict for each prefix
+     * @return the (at most) n most popular words for each prefix, in alphabetical order of prefix
      */
-    private int numLeavesHelper(int count, DictionaryTree tree) {
-        if (tree.children.isEmpty()) {
-            return ++count;
+    Map<String, List<String>> predictAll(Collection<String> prefixes, int n) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (String prefix : new TreeSet<>(prefixes)) {
+            if (!group.isEmpty() && (group.get(0).isEmpty() || group.get(0).charAt(0) != prefix.charAt(0))) {
+                groups.add(group);
+                group = new ArrayList<>();
+            }
+            group.add(prefix);
         }
-        else {
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                count = numLeavesHelper(count, entry.getValue());
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+
+        List<RecursiveTask<Map<String, List<String>>>> tasks = new ArrayList<>();
+        for (List<String> sharedLetter : groups) {
+            tasks.add(new RecursiveTask<Map<String, List<String>>>() {
+                @Override
+                protected Map<String, List<String>> compute() {
+                    return predictAllHelper(sharedLetter, n);
+                }
+            });
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
             }
+        });
+
+        LinkedHashMap<String, List<String>> predictions = new LinkedHashMap<>();
+        for (RecursiveTask<Map<String, List<String>>> task : tasks) {
+            predictions.putAll(task.join());
         }
-        return count;
+        return predictions;
     }
 
+
     /**
-     * @return the maximum number of children held by any node in this tree
+     *
+     * Helper method for predictAll()
+     * Answers sorted prefixes one after another,
+     * keeping the nodes along the previous prefix
+     * so only the letters after the part it shares
+     * with the next prefix are looked up. When a
+     * shorter prefix of the current one has been
+     * answered, its words that also start with the
+     * current prefix are reused if there are enough
+     * of them, or if they were all the words it had.
+     *
+     * @param prefixes The prefixes to answer, in alphabetical order
+     * @param numOfWords The maximum number of words to predict for each prefix
+     * @return The predicted words for each prefix
      */
-    int maximumBranching() {
-        return maxBranchHelper(0, this);
-    }
+    private Map<String, List<String>> predictAllHelper(List<String> prefixes, int numOfWords) {
+        LinkedHashMap<String, List<String>> predictions = new LinkedHashMap<>();
+        ArrayList<DictionaryTree> path = new ArrayList<>();
+        path.add(this);
+        String previous = "";
+        ArrayList<String> answered = new ArrayList<>();
+        for (String prefix : prefixes) {
+            int shared = 0;
+            while (shared < Math.min(previous.length(), prefix.length())
+                    && shared + 1 < path.size() && previous.charAt(shared) == prefix.charAt(shared)) {
+                ++shared;
+            }
+            while (path.size() > shared + 1) {
+                path.remove(path.size() - 1);
+            }
+            DictionaryTree node = path.get(path.size() - 1);
+            for (int i = shared; i < prefix.length() && node != null; i++) {
+                node = node.children.get(prefix.charAt(i));
+                if (node != null) {
+                    path.add(node);
+                }
+            }
+            previous = prefix;
 
+            while (!answered.isEmpty() && !prefix.startsWith(answered.get(answered.size() - 1))) {
+                answered.remove(answered.size() - 1);
+            }
+            List<String> words = null;
+            if (node == null) {
+                words = new ArrayList<>();
+            }
+            else if (numOfWords > CACHE_SIZE && !answered.isEmpty()) {
+                List<String> shorter = predictions.get(answered.get(answered.size() - 1));
+                List<String> reused = new ArrayList<>();
+                for (String word : shorter) {
+                    if (word.startsWith(prefix)) {
+                        reused.add(word);
+                    }
+                }
+                if (reused.size() == numOfWords || shorter.size() < numOfWords) {
+                    words = reused;
+                }
+            }
+            if (words == null) {
+                words = node.predictHelper(numOfWords);
+            }
+            predictions.put(prefix, words);
+            answered.add(prefix);
+        }
+        return predictions;
+    }
 
     /**
-     * Helper method for maximumBranch()
-     * Recursively traverses each level of each subtree
-     * and keeps track of the maximum number of children
-     *
-     * @param maxBranch Current max amount of children in tree
-     * @param tree      The tree to operate on
-     * @return The maximum number of children in the tree
+     * A node reached while searching for words close to a mistyped prefix
      */
-    private int maxBranchHelper(int maxBranch, DictionaryTree tree) {
-        if (tree.children.isEmpty()) {
-            return 0;
-        }
-        else {
+    private static final class FuzzyMatch {
+        private static final Comparator<FuzzyMatch> BEST_FIRST =
+                Comparator.comparingInt((FuzzyMatch match) -> match.distance)
+                        .thenComparing(match -> match.tree.topWords.get(0), RANKING);
 
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                int count = 0;
-                for (int i = 0; i < tree.children.size(); i++) {
-                    ++count;
-                }
-                maxBranch = Math.max(maxBranch, count);
-                maxBranch = Math.max(maxBranch, maxBranchHelper(maxBranch, entry.getValue()));
+        private final DictionaryTree tree;
+        private final int[] row;
+        private final int pathDistance;
+        private final int distance;
+
+        /**
+         * @param tree The node reached
+         * @param row The edit distances from each prefix of the typed prefix to the path to the node
+         * @param pathDistance The smallest edit distance from the whole typed prefix to any part of the path
+         */
+        private FuzzyMatch(DictionaryTree tree, int[] row, int pathDistance) {
+            this.tree = tree;
+            this.row = row;
+            this.pathDistance = pathDistance;
+            int lowest = pathDistance;
+            for (int edits : row) {
+                lowest = Math.min(lowest, edits);
             }
+            this.distance = lowest;
         }
-        return maxBranch;
     }
 
     /**
-     * @return the height of this tree, i.e. the length of the longest branch
+     * Predicts the (at most) n best words starting with something within
+     * maxEdits insertions, deletions or substitutions of the given prefix.
+     * Words are ranked by how few edits their prefix needs and then by
+     * popularity, so correctly typed prefixes still come first.
+     *
+     * @param prefix the possibly mistyped prefix of the words found
+     * @param maxEdits the largest number of edits allowed
+     * @param n the maximum number of words to predict
+     * @return the (at most) n best words within maxEdits edits of the prefix
      */
-    int height() {
-        return heightHelper(0, 0, this);
+    List<String> predictFuzzy(String prefix, int maxEdits, int n) {
+        return predictFuzzyHelper(prefix, maxEdits, n);
     }
 
 
     /**
-     * Helper method for height()
-     * Recursively goes to end of each subtree
-     * and keeps track of the height
      *
-     * @param height Current height of tree
-     * @param count  Current height of subtree
-     * @param tree   The tree to operate on
-     * @return The height of the tree
+     * Helper method for predictFuzzy()
+     * Runs a Levenshtein automaton over the tree:
+     * each node carries the row of edit distances
+     * between the prefixes of the typed prefix and
+     * the path to the node, and the smallest value
+     * in a row bounds the distance of every word
+     * below it. Nodes are expanded best bound first,
+     * so the search stops as soon as no remaining
+     * node could beat the n words already found.
+     *
+     * @param prefix The possibly mistyped prefix
+     * @param maxEdits The largest number of edits allowed
+     * @param numOfWords The maximum number of words to predict
+     * @return The predicted words, best first
      */
-    private int heightHelper(int height, int count, DictionaryTree tree) {
-        if (tree.children.isEmpty()) {
-            height = Math.max(height, count);
+    private List<String> predictFuzzyHelper(String prefix, int maxEdits, int numOfWords) {
+        ArrayList<String> words = new ArrayList<>();
+        if (topWords.isEmpty() || numOfWords <= 0) {
+            return words;
         }
-        else {
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                ++count;
-                height = heightHelper(height, count, entry.getValue());
-                --count;
+        int length = prefix.length();
+        int[] firstRow = new int[length + 1];
+        for (int i = 0; i <= length; i++) {
+            firstRow[i] = i;
+        }
+
+        Comparator<FuzzyMatch> byWord = Comparator.comparingInt((FuzzyMatch match) -> match.pathDistance)
+                .thenComparing(match -> match.tree, RANKING);
+        PriorityQueue<FuzzyMatch> best = new PriorityQueue<>(byWord.reversed());
+        PriorityQueue<FuzzyMatch> toVisit = new PriorityQueue<>(FuzzyMatch.BEST_FIRST);
+        toVisit.add(new FuzzyMatch(this, firstRow, length));
+        while (!toVisit.isEmpty()) {
+            FuzzyMatch match = toVisit.poll();
+            if (best.size() == numOfWords && !beats(match.distance, match.tree.topWords.get(0), best.peek())) {
+                break;
+            }
+            if (match.tree.endOfWord && match.pathDistance <= maxEdits) {
+                if (best.size() < numOfWords) {
+                    best.add(match);
+                }
+                else if (beats(match.pathDistance, match.tree, best.peek())) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+            for (Map.Entry<Character, DictionaryTree> entry : match.tree.children.entrySet()) {
+                char letter = entry.getKey();
+                int[] row = new int[length + 1];
+                row[0] = match.row[0] + 1;
+                for (int i = 1; i <= length; i++) {
+                    int substitute = match.row[i - 1] + (prefix.charAt(i - 1) == letter ? 0 : 1);
+                    row[i] = Math.min(substitute, Math.min(match.row[i], row[i - 1]) + 1);
+                }
+                FuzzyMatch next = new FuzzyMatch(entry.getValue(), row, Math.min(match.pathDistance, row[length]));
+                if (next.distance <= maxEdits
+                        && (best.size() < numOfWords || beats(next.distance, next.tree.topWords.get(0), best.peek()))) {
+                    toVisit.add(next);
+                }
             }
         }
-        return height;
+        while (!best.isEmpty()) {
+            words.add(best.poll().tree.word);
+        }
+        Collections.reverse(words);
+        return words;
     }
 
     /**
-     * @return the number of nodes in this tree
+     * @return true if a word at the given distance ranks above the given fuzzy match
      */
-    int size() {
-        return sizeHelper(1, this);
+    private static boolean beats(int distance, DictionaryTree tree, FuzzyMatch worst) {
+        if (distance != worst.pathDistance) {
+            return distance < worst.pathDistance;
+        }
+        return RANKING.compare(tree, worst.tree) < 0;
     }
 
-
     /**
-     * Helper method for size()
-     * Recursively counts the number of nodes
-     * at each level in each subtree
-     *
-     * @param count The running total of the number of nodes
-     * @param tree  The tree to operate on
-     * @return The size of the tree
+     * Recomputes this node's structural statistics from its children,
+     * whose own statistics must already be up to date.
+     * The deepest node is the first node of greatest depth in depth-first
+     * order, so that longestWord() keeps returning the first such word.
      */
-    private int sizeHelper(int count, DictionaryTree tree) {
-        if (!tree.children.isEmpty()) {
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                count = 1 + sizeHelper(count, entry.getValue());
+    private void refreshStats() {
+        subtreeSize = 1;
+        height = 0;
+        numLeaves = children.isEmpty() ? 1 : 0;
+        maxBranching = children.size();
+        deepest = this;
+        for (DictionaryTree child : children.values()) {
+            subtreeSize += child.subtreeSize;
+            numLeaves += child.numLeaves;
+            maxBranching = Math.max(maxBranching, child.maxBranching);
+            if (child.height + 1 > height) {
+                height = child.height + 1;
+                deepest = child.deepest;
             }
         }
-
-        return count;
     }
 
     /**
-     * @return the longest word in this tree
+     * @return the number of leaves in this tree, i.e. the number of words which are
+     * not prefixes of any other word.
      */
-    String longestWord() {
-        return longestWordHelper("", "", this);
+    int numLeaves() {
+        return numLeaves;
+    }
 
+    /**
+     * @return the maximum number of children held by any node in this tree
+     */
+    int maximumBranching() {
+        return maxBranching;
     }
 
+    /**
+     * @return the height of this tree, i.e. the length of the longest branch
+     */
+    int height() {
+        return height;
+    }
 
     /**
-     *
-     * Helper method for longestWord()
-     * Recursively traverses the tree creating
-     * words and checking them against the
-     * current longest words
-     *
-     * @param longestWord The current longest word
-     * @param currentWord THe current word
-     * @param tree THe tree to operate on
-     * @return The longest word in the tree
+     * @return the number of nodes in this tree
      */
-    private String longestWordHelper(String longestWord, String currentWord, DictionaryTree tree) {
-        if (tree.children.isEmpty()) {
-            return longestWord;
-        }
-        else {
+    int size() {
+        return subtreeSize;
+    }
 
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                currentWord += entry.getKey();
-                if (currentWord.length() > longestWord.length()) {
-                    longestWord = currentWord;
-                    longestWord = longestWordHelper(longestWord, currentWord, entry.getValue());
-                }
-                else {
-                    longestWord = longestWordHelper(longestWord, currentWord, entry.getValue());
-                }
-                currentWord = currentWord.substring(0, currentWord.length() - 1);
-            }
-        }
-        return longestWord;
+    /**
+     * @return the longest word in this tree
+     */
+    String longestWord() {
+        return height == 0 ? "" : deepest.word;
     }
 
     /**
      * @return all words stored in this tree as a list
      */
     List<String> allWords() {
-        LinkedHashMap<String, Integer> words = new LinkedHashMap<>();
-        words = allWordsHelper(words, "", this);
-        return new ArrayList<>(words.keySet());
+        return words().collect(Collectors.toList());
     }
 
-
     /**
+     * Streams the words stored in this tree in the same order as allWords(),
+     * walking the tree lazily as the stream is consumed. The stream can be
+     * made parallel, in which case different subtrees are walked by
+     * different threads.
      *
-     * Helper method for allWords()
-     * Recursively traverses the tree adding
-     * words to a list
+     * @return a stream of all words stored in this tree
+     */
+    Stream<String> words() {
+        return StreamSupport.stream(new WordSpliterator(this), false);
+    }
+
+    /**
+     * Streams the words starting with the given prefix, walking the tree
+     * lazily as the stream is consumed.
      *
-     * @param words The list of words in the tree
-     * @param currentWord THe current word
-     * @param tree The tree to operate on
-     * @return The list of words in the tree
+     * @param prefix the prefix of the words streamed
+     * @return a stream of the words starting with the prefix
      */
-    private LinkedHashMap<String, Integer> allWordsHelper(LinkedHashMap<String, Integer> words, String currentWord, DictionaryTree tree) {
-        if (tree.children.isEmpty()) {
-            return words;
-        }
-        else {
-            if (tree.endOfWord) {
-                words.put(currentWord, tree.popularity);
-            }
-            for (Map.Entry<Character, DictionaryTree> entry : tree.children.entrySet()) {
-                currentWord += entry.getKey();
-                if (entry.getValue().endOfWord) {
-                    words.put(currentWord, entry.getValue().popularity);
-                }
-                words = allWordsHelper(words, currentWord, entry.getValue());
-                currentWord = currentWord.substring(0, currentWord.length() - 1);
-            }
+    Stream<String> words(String prefix) {
+        DictionaryTree node = find(prefix);
+        if (node == null) {
+            return Stream.empty();
         }
-        return words;
+        return StreamSupport.stream(new WordSpliterator(node), false);
     }
 
     /**
@@ -428,13 +1283,104 @@ public class DictionaryTree {
      * children is folded with the same function, and these results
      * are stored in a collection, cResults, say, then the final
      * result is calculated using f.apply(this, cResults).
+     * Subtrees are folded in parallel on the common fork-join pool,
+     * so f may be called from several threads at once.
      *
      * @param f   the summarising function, which is passed the result of invoking the given function
      * @param <A> the type of the folded value
      * @return the result of folding the tree using f
      */
     <A> A fold(BiFunction<DictionaryTree, Collection<A>, A> f) {
-        throw new RuntimeException("DictionaryTree.fold not implemented yet");
+        return fold(f, FOLD_CUTOFF);
+    }
+
+    /**
+     * Folds the tree using the given function, folding subtrees with more
+     * than cutoff nodes in parallel and smaller ones on the current thread.
+     *
+     * @param f      the summarising function, which is passed the result of invoking the given function
+     * @param cutoff the number of nodes a subtree must have to be folded as a separate task
+     * @param <A>    the type of the folded value
+     * @return the result of folding the tree using f
+     */
+    <A> A fold(BiFunction<DictionaryTree, Collection<A>, A> f, int cutoff) {
+        return ForkJoinPool.commonPool().invoke(new FoldTask<>(this, f, cutoff));
+    }
+
+    /**
+     * Folds one subtree. The subtree is walked with an explicit stack rather
+     * than by recursion, so long words cannot overflow the call stack, and
+     * any large child of a node with other children is forked as a task of
+     * its own. A node with a single child gains nothing from forking, so
+     * chains of single children are walked on the same thread.
+     */
+    private static final class FoldTask<A> extends RecursiveTask<A> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DictionaryTree root;
+        private final BiFunction<DictionaryTree, Collection<A>, A> f;
+        private final int cutoff;
+
+        private FoldTask(DictionaryTree root, BiFunction<DictionaryTree, Collection<A>, A> f, int cutoff) {
+            this.root = root;
+            this.f = f;
+            this.cutoff = cutoff;
+        }
+
+        /**
+         * A node whose children are being folded
+         */
+        private final class Frame {
+            private final DictionaryTree tree;
+            private final Iterator<DictionaryTree> children;
+            private final ArrayList<A> results = new ArrayList<>();
+            private final ArrayList<FoldTask<A>> forked = new ArrayList<>();
+
+            private Frame(DictionaryTree tree) {
+                this.tree = tree;
+                this.children = tree.children.values().iterator();
+            }
+        }
+
+        @Override
+        protected A compute() {
+            ArrayDeque<Frame> stack = new ArrayDeque<>();
+            stack.push(new Frame(root));
+            A result = null;
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.children.hasNext()) {
+                    DictionaryTree child = frame.children.next();
+                    if (child.subtreeSize > cutoff && frame.tree.children.size() > 1) {
+                        FoldTask<A> task = new FoldTask<>(child, f, cutoff);
+                        task.fork();
+                        frame.results.add(null);
+                        frame.forked.add(task);
+                    }
+                    else {
+                        stack.push(new Frame(child));
+                    }
+                }
+                else {
+                    stack.pop();
+                    for (int i = 0; i < frame.forked.size(); i++) {
+                        if (frame.forked.get(i) != null) {
+                            frame.results.set(i, frame.forked.get(i).join());
+                        }
+                    }
+                    A value = f.apply(frame.tree, Collections.unmodifiableList(frame.results));
+                    if (stack.isEmpty()) {
+                        result = value;
+                    }
+                    else {
+                        stack.peek().results.add(value);
+                        stack.peek().forked.add(null);
+                    }
+                }
+            }
+            return result;
+        }
     }
 
 }
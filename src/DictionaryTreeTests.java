@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -346,6 +347,1182 @@ public class DictionaryTreeTests {
     }
     
     
+    /**
+	 * Method: predict() advanced - Test 2
+	 * 
+	 * The method should notice when a cached
+	 * word becomes less popular than a word
+	 * that was not cached before
+	 */
+    @Test
+    public void predict2a() {
+    	DictionaryTree unit = new DictionaryTree();
+    	for (int i = 0; i < 12; i++) {
+    		unit.insert("word" + (char) ('a' + i), i);
+    	}
+    	unit.insert("worda", 100);
+        java.util.List<String> words = new ArrayList<>();
+        words.add("wordb");
+        words.add("wordc");
+        Assertions.assertEquals(words, unit.predict("wo", 2));
+        Assertions.assertEquals("wordk", unit.predict("word", 10).get(9));
+    }
+    
+    
+    /**
+	 * Method: predict() advanced - Test 3
+	 * 
+	 * The method should stop predicting
+	 * words that have been removed
+	 */
+    @Test
+    public void predict3a() {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello", 4);
+        unit.insert("hell", 2);
+        unit.insert("hi", 1);
+        unit.remove("hi");
+        unit.remove("hell");
+        java.util.List<String> words = new ArrayList<>();
+        words.add("hello");
+        Assertions.assertEquals(words, unit.predict("h", 2));
+    }
+    
+    
+    /**
+	 * Method: contains() - Test 3
+	 * 
+	 * Checks whether false is returned
+	 * if only a prefix of the word, or a
+	 * longer word, is in the tree
+	 */
+    @Test
+    public void contains3() {
+        DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello");
+        unit.insert("he");
+        Assertions.assertEquals(false, unit.contains("hell"));
+        Assertions.assertEquals(false, unit.contains("helloo"));
+        Assertions.assertEquals(true, unit.contains("he"));
+    }
+    
+    
+    /**
+	 * Class: PrefixCursor - Test 1
+	 * 
+	 * Typing and deleting letters should
+	 * give the same predictions as asking
+	 * the tree for the whole prefix
+	 */
+    @Test
+    public void prefixCursor1() {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello", 4);
+        unit.insert("hell", 2);
+        unit.insert("help", 3);
+        PrefixCursor cursor = new PrefixCursor(unit);
+        cursor.advance('h');
+        cursor.advance('e');
+        cursor.advance('l');
+        Assertions.assertEquals(unit.predict("hel", 2), cursor.predict(2));
+        Assertions.assertEquals(false, cursor.advance('x'));
+        Assertions.assertEquals(false, cursor.advance('l'));
+        Assertions.assertEquals(java.util.Collections.EMPTY_LIST, cursor.predict(2));
+        cursor.backspace();
+        Assertions.assertEquals(true, cursor.backspace());
+        Assertions.assertEquals(true, cursor.advance('p'));
+        Assertions.assertEquals(true, cursor.isWord());
+        Assertions.assertEquals(Optional.of("help"), cursor.predict());
+    }
+    
+    
+    /**
+	 * Method: predict() advanced - Test 4
+	 * 
+	 * The method should return every word
+	 * when asked for more words than the cache
+	 * holds, keeping words that share a popularity
+	 * and ordering them alphabetically
+	 */
+    @Test
+    public void predict4a() {
+    	DictionaryTree unit = new DictionaryTree();
+    	java.util.List<String> words = new ArrayList<>();
+    	for (int i = 0; i < 15; i++) {
+    		unit.insert("word" + (char) ('o' - i), i / 2);
+    	}
+    	for (int i = 0; i < 15; i += 2) {
+    		if (i + 1 < 15) {
+    			words.add("word" + (char) ('o' - i - 1));
+    		}
+    		words.add("word" + (char) ('o' - i));
+    	}
+        Assertions.assertEquals(words, unit.predict("w", 20));
+        Assertions.assertEquals(words.subList(0, 12), unit.predict("wor", 12));
+    }
+    
+    
+    /**
+	 * Method: predict() advanced - Test 5
+	 * 
+	 * Asking for far more words than the
+	 * tree holds should return every word
+	 * without sizing anything to the request
+	 */
+    @Test
+    public void predict5a() {
+    	DictionaryTree unit = new DictionaryTree();
+    	for (int i = 0; i < 15; i++) {
+    		unit.insert("word" + (char) ('a' + i), i);
+    	}
+        Assertions.assertEquals(unit.predict("w", 15), unit.predict("w", Integer.MAX_VALUE));
+        Assertions.assertEquals(unit.predict("w", 15), unit.predictFuzzy("w", 0, Integer.MAX_VALUE));
+    }
+    
+    
+    /**
+	 * Class: DictionarySnapshot - Test 1
+	 * 
+	 * A saved snapshot should give the same
+	 * answers as the tree it was saved from
+	 */
+    @Test
+    public void snapshot1() throws java.io.IOException {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello", 4);
+        unit.insert("hell", 2);
+        unit.insert("help", 3);
+        unit.insert("to", 1);
+        java.io.File f = java.io.File.createTempFile("dictionary", ".snapshot");
+        f.deleteOnExit();
+        unit.save(f);
+        DictionarySnapshot snapshot = DictionarySnapshot.open(f);
+        Assertions.assertEquals(unit.size(), snapshot.size());
+        Assertions.assertEquals(true, snapshot.contains("hell"));
+        Assertions.assertEquals(false, snapshot.contains("hel"));
+        Assertions.assertEquals(unit.predict("he", 3), snapshot.predict("he", 3));
+        Assertions.assertEquals(Optional.of("to"), snapshot.predict("t"));
+        Assertions.assertEquals(Optional.empty(), snapshot.predict("x"));
+    }
+    
+    
+    /**
+	 * Class: DictionarySnapshot - Test 2
+	 * 
+	 * A snapshot saved after some words were
+	 * selected should rank them as the tree did,
+	 * whether or not the prediction fits in the
+	 * cache of each node
+	 */
+    @Test
+    public void snapshot2() throws java.io.IOException {
+        DictionaryTree unit = new DictionaryTree();
+        for (int i = 0; i < 30; i++) {
+            unit.insert("w" + (char) ('a' + i % 26) + i, i);
+        }
+        for (int t = 0; t < 3; t++) {
+            unit.recordSelection("wd29", t);
+        }
+        java.io.File f = java.io.File.createTempFile("dictionary", ".snapshot");
+        f.deleteOnExit();
+        unit.save(f);
+        DictionarySnapshot snapshot = DictionarySnapshot.open(f);
+        for (int n = 1; n <= 31; n++) {
+            Assertions.assertEquals(unit.predict("w", n), snapshot.predict("w", n));
+        }
+        Assertions.assertEquals("wd29", snapshot.predict("w", 11).get(0));
+        Assertions.assertEquals(unit.predict("wd", 3), snapshot.predict("wd", 3));
+    }
+    
+    
+    /**
+	 * Method: build() - Test 1
+	 * 
+	 * A dictionary built in one go should
+	 * match one built by inserting the
+	 * words one at a time
+	 */
+    @Test
+    public void build1() {
+    	java.util.List<String> words = java.util.Arrays.asList("hello", "word", "hell", "to", "wording", "because", "hello");
+    	DictionaryTree expected = new DictionaryTree();
+    	for (String word : words) {
+    		expected.insert(word);
+    	}
+    	DictionaryTree unit = DictionaryTree.build(words);
+        Assertions.assertEquals(expected.allWords(), unit.allWords());
+        Assertions.assertEquals(expected.size(), unit.size());
+        Assertions.assertEquals(expected.predict("h", 2), unit.predict("h", 2));
+        Assertions.assertEquals(expected.predict("wo", 20), unit.predict("wo", 20));
+    }
+    
+    
+    /**
+	 * Class: CompiledDictionary - Test 1
+	 * 
+	 * Words sharing an ending should share
+	 * states, while contains and predict
+	 * still match the original tree
+	 */
+    @Test
+    public void compiledDictionary1() {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("walking", 3);
+        unit.insert("talking", 1);
+        unit.insert("walk", 4);
+        unit.insert("talk", 2);
+        unit.insert("wall", 5);
+        CompiledDictionary compiled = CompiledDictionary.compile(unit);
+        Assertions.assertEquals(true, compiled.size() < unit.size());
+        Assertions.assertEquals(true, compiled.contains("talk"));
+        Assertions.assertEquals(false, compiled.contains("tal"));
+        Assertions.assertEquals(false, compiled.contains("talks"));
+        Assertions.assertEquals(unit.predict("wal", 3), compiled.predict("wal", 3));
+        Assertions.assertEquals(Optional.of("talking"), compiled.predict(""));
+    }
+    
+    
+    /**
+	 * Class: ConcurrentDictionaryTree - Test 1
+	 * 
+	 * A snapshot should keep seeing the
+	 * words it was taken with while the
+	 * dictionary itself is changed
+	 */
+    @Test
+    public void concurrentDictionaryTree1() {
+    	ConcurrentDictionaryTree unit = new ConcurrentDictionaryTree();
+        unit.insert("hello", 4);
+        unit.insert("hell", 2);
+        ConcurrentDictionaryTree.Snapshot before = unit.snapshot();
+        unit.remove("hell");
+        unit.insert("help", 1);
+        java.util.List<String> words = new ArrayList<>();
+        words.add("hell");
+        words.add("hello");
+        Assertions.assertEquals(words, before.predict("hel", 3));
+        Assertions.assertEquals(false, unit.contains("hell"));
+        Assertions.assertEquals(Optional.of("help"), unit.predict("hel"));
+    }
+    
+    
+    /**
+	 * Method: recordSelection() - Test 1
+	 * 
+	 * Picked words should be predicted first,
+	 * with a recent pick beating two picks
+	 * made several half-lives earlier
+	 */
+    @Test
+    public void recordSelection1() {
+        long hour = 60 * 60 * 1000;
+    	DictionaryTree unit = new DictionaryTree(hour, 1000);
+        unit.insert("hello", 1);
+        unit.insert("help", 2);
+        unit.insert("hell", 3);
+        Assertions.assertEquals(true, unit.recordSelection("help", 0));
+        Assertions.assertEquals(true, unit.recordSelection("help", 0));
+        Assertions.assertEquals(Optional.of("help"), unit.predict("hel"));
+        Assertions.assertEquals(true, unit.recordSelection("hell", 5 * hour));
+        java.util.List<String> words = new ArrayList<>();
+        words.add("hell");
+        words.add("help");
+        words.add("hello");
+        Assertions.assertEquals(words, unit.predict("he", 3));
+        Assertions.assertEquals(false, unit.recordSelection("he", 5 * hour));
+    }
+    
+    
+    /**
+	 * Method: recordSelection() - Test 2
+	 * 
+	 * Selections should fade, so that words
+	 * no longer picked sink back to the rank
+	 * their popularity gives them
+	 */
+    @Test
+    public void recordSelection2() {
+        long hour = 60 * 60 * 1000;
+    	DictionaryTree unit = new DictionaryTree(hour, 100);
+        for (int i = 0; i < 200; i++) {
+            unit.insert("w" + (char) ('a' + i / 26) + (char) ('a' + i % 26), i + 1);
+        }
+        Assertions.assertEquals(true, unit.recordSelection("whr", 0));
+        Assertions.assertEquals(Optional.of("whr"), unit.predict("wh"));
+        Assertions.assertEquals(Optional.of("waa"), unit.predict("w"));
+        Assertions.assertEquals(Arrays.asList(), unit.ageSelections(hour / 32));
+        Assertions.assertEquals(Arrays.asList("whr"), unit.ageSelections(3 * hour));
+        Assertions.assertEquals(Arrays.asList("wha", "whb"), unit.predict("wh", 2));
+        Assertions.assertEquals(187, unit.predict("w", 200).indexOf("whr"));
+        Assertions.assertEquals(Arrays.asList("whr"), unit.ageSelections(10 * hour));
+        Assertions.assertEquals(199, unit.predict("w", 200).indexOf("whr"));
+        Assertions.assertEquals(Arrays.asList(), unit.ageSelections(20 * hour));
+    }
+    
+    
+    /**
+	 * Method: predictFuzzy() - Test 1
+	 * 
+	 * The method should find words despite
+	 * typing mistakes, ranking words needing
+	 * fewer edits first
+	 */
+    @Test
+    public void predictFuzzy1() {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello", 4);
+        unit.insert("help", 2);
+        unit.insert("jelly", 1);
+        unit.insert("world", 3);
+        java.util.List<String> words = new ArrayList<>();
+        words.add("help");
+        words.add("hello");
+        words.add("jelly");
+        Assertions.assertEquals(words, unit.predictFuzzy("hrl", 2, 3));
+        words.remove("jelly");
+        Assertions.assertEquals(words, unit.predictFuzzy("hrl", 1, 3));
+        Assertions.assertEquals(java.util.Collections.EMPTY_LIST, unit.predictFuzzy("xyz", 1, 3));
+    }
+    
+    
+    /**
+	 * Class: PredictionServer - Test 1
+	 * 
+	 * The server should answer pipelined
+	 * requests in order
+	 */
+    @Test
+    public void predictionServer1() throws Exception {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello", 2);
+        unit.insert("help", 1);
+        try (PredictionServer server = new PredictionServer(unit::contains, unit::predict, 0)) {
+        	new Thread(() -> {
+        		try {
+        			server.serve();
+        		}
+        		catch (java.io.IOException e) {
+        			throw new java.io.UncheckedIOException(e);
+        		}
+        	}).start();
+        	try (java.net.Socket client = new java.net.Socket(java.net.InetAddress.getLoopbackAddress(), server.port());
+        	     java.io.BufferedReader replies = new java.io.BufferedReader(new java.io.InputStreamReader(client.getInputStream()))) {
+        		client.getOutputStream().write("contains hello\npredict hel 2\ncontains hel\n".getBytes());
+        		Assertions.assertEquals("true", replies.readLine());
+        		Assertions.assertEquals("help\thello", replies.readLine());
+        		Assertions.assertEquals("false", replies.readLine());
+        	}
+        }
+    }
+    
+    
+    /**
+	 * Class: PredictionServer - Test 2
+	 * 
+	 * A request the dictionary fails on should
+	 * be answered with an error without dropping
+	 * the connection, the number of words asked
+	 * for should be capped, and a long stream of
+	 * requests should all be answered
+	 */
+    @Test
+    public void predictionServer2() throws Exception {
+    	DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello", 2);
+        unit.insert("help", 1);
+        java.util.concurrent.atomic.AtomicInteger largest = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.function.BiFunction<String, Integer, java.util.List<String>> predict = (prefix, n) -> {
+        	largest.accumulateAndGet(n, Math::max);
+        	if (prefix.equals("boom")) {
+        		throw new IllegalStateException("boom\nagain");
+        	}
+        	return unit.predict(prefix, n);
+        };
+        try (PredictionServer server = new PredictionServer(unit::contains, predict, 0)) {
+        	new Thread(() -> {
+        		try {
+        			server.serve();
+        		}
+        		catch (java.io.IOException e) {
+        			throw new java.io.UncheckedIOException(e);
+        		}
+        	}).start();
+        	try (java.net.Socket client = new java.net.Socket(java.net.InetAddress.getLoopbackAddress(), server.port());
+        	     java.io.BufferedReader replies = new java.io.BufferedReader(new java.io.InputStreamReader(client.getInputStream()))) {
+        		client.getOutputStream().write("predict boom\npredict hel 2\n".getBytes());
+        		Assertions.assertEquals("error failed: java.lang.IllegalStateException: boom again", replies.readLine());
+        		Assertions.assertEquals("help\thello", replies.readLine());
+        		client.getOutputStream().write("predict hel 2000000000\npredict hel -3\n".getBytes());
+        		Assertions.assertEquals("help\thello", replies.readLine());
+        		Assertions.assertEquals("", replies.readLine());
+        		Assertions.assertEquals(1000, largest.get());
+        		StringBuilder requests = new StringBuilder();
+        		for (int i = 0; i < 2000; i++) {
+        			requests.append(i % 2 == 0 ? "contains hello\n" : "predict he\n");
+        		}
+        		client.getOutputStream().write(requests.toString().getBytes());
+        		for (int i = 0; i < 2000; i++) {
+        			Assertions.assertEquals(i % 2 == 0 ? "true" : "help", replies.readLine());
+        		}
+        	}
+        }
+    }
+    
+    
+    /**
+	 * Method: predictAll() - Test 1
+	 * 
+	 * The method should give the same
+	 * words for each prefix as predict()
+	 */
+    @Test
+    public void predictAll1() {
+    	DictionaryTree unit = new DictionaryTree();
+    	for (int i = 0; i < 30; i++) {
+    		unit.insert("th" + (char) ('a' + i % 26) + i, 30 - i);
+    	}
+        unit.insert("the", 0);
+        unit.insert("to", 1);
+        java.util.List<String> prefixes = java.util.Arrays.asList("the", "th", "t", "x", "the", "thb");
+        java.util.Map<String, java.util.List<String>> predictions = unit.predictAll(prefixes, 12);
+        Assertions.assertEquals(5, predictions.size());
+        for (String prefix : prefixes) {
+        	Assertions.assertEquals(unit.predict(prefix, 12), predictions.get(prefix));
+        }
+    }
+    
+    
+    /**
+	 * Method: words() - Test 1
+	 * 
+	 * The stream should give the same words
+	 * as allWords(), even when parallel
+	 */
+    @Test
+    public void words1() {
+        DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello");
+        unit.insert("hell");
+        unit.insert("word");
+        unit.insert("to");
+        unit.insert("because");
+        unit.insert("wording");
+        Assertions.assertEquals(unit.allWords(), unit.words().parallel().collect(java.util.stream.Collectors.toList()));
+        Assertions.assertEquals(2L, unit.words("wo").count());
+        Assertions.assertEquals(0L, unit.words("x").count());
+    }
+    
+    
+    /**
+	 * Method: fold() - Test 1
+	 * 
+	 * Folding should be able to count the
+	 * nodes and words of the tree, whether
+	 * subtrees are folded in parallel or not
+	 */
+    @Test
+    public void fold1() {
+        DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello");
+        unit.insert("hell");
+        unit.insert("word");
+        unit.insert("to");
+        unit.insert("because");
+        unit.insert("wording");
+        java.util.function.BiFunction<DictionaryTree, Collection<Integer>, Integer> countNodes =
+        		(tree, results) -> 1 + results.stream().mapToInt(Integer::intValue).sum();
+        java.util.function.BiFunction<DictionaryTree, Collection<Integer>, Integer> countWords =
+        		(tree, results) -> (tree.isWord() ? 1 : 0) + results.stream().mapToInt(Integer::intValue).sum();
+        Assertions.assertEquals(unit.size(), (int) unit.fold(countNodes));
+        Assertions.assertEquals(unit.size(), (int) unit.fold(countNodes, 1));
+        Assertions.assertEquals(6, (int) unit.fold(countWords, 2));
+    }
+    
+    
+    /**
+	 * Method: remove() - Test 4
+	 * 
+	 * The structural statistics should be
+	 * updated when words are removed, falling
+	 * back to the next longest branch
+	 */
+    @Test
+    public void remove4() {
+        DictionaryTree unit = new DictionaryTree();
+        unit.insert("hello");
+        unit.insert("hell");
+        unit.insert("word");
+        unit.insert("to");
+        unit.insert("because");
+        unit.insert("wording");
+        unit.remove("because");
+        unit.remove("wording");
+        Assertions.assertEquals("hello", unit.longestWord());
+        Assertions.assertEquals(5, unit.height());
+        Assertions.assertEquals(3, unit.numLeaves());
+        Assertions.assertEquals(3, unit.maximumBranching());
+        Assertions.assertEquals(12, unit.size());
+        unit.remove("word");
+        unit.remove("to");
+        Assertions.assertEquals(1, unit.maximumBranching());
+        Assertions.assertEquals(1, unit.numLeaves());
+    }
+    
+    
+    /**
+	 * Method: insert() - Test 2
+	 * 
+	 * Words should be able to be inserted,
+	 * looked up and removed straight from a
+	 * character buffer or a StringBuilder
+	 */
+    @Test
+    public void insert2() {
+        DictionaryTree unit = new DictionaryTree();
+        char[] buffer = "hello,help,hell".toCharArray();
+        unit.insert(buffer, 0, 5);
+        unit.insert(buffer, 6, 4);
+        unit.insert(new StringBuilder("hell"));
+        Assertions.assertEquals(true, unit.contains(buffer, 11, 4));
+        Assertions.assertEquals(true, unit.contains(new StringBuilder("help")));
+        Assertions.assertEquals(false, unit.contains(buffer, 0, 3));
+        Assertions.assertEquals(Arrays.asList("hello", "help", "hell"), unit.predict("he", 3));
+        unit.remove(buffer, 6, 4);
+        Assertions.assertEquals(false, unit.contains("help"));
+        Assertions.assertEquals("hello", unit.longestWord());
+        Assertions.assertEquals(6, unit.size());
+    }
+    
+    
+    /**
+	 * Class: WordFileLoader - Test 1
+	 * 
+	 * Words should be loaded from the file
+	 * in order, with counted words ranked
+	 * by their counts ahead of the rest
+	 */
+    @Test
+    public void wordFileLoader1() throws java.io.IOException {
+        java.io.File f = java.io.File.createTempFile("words", ".txt");
+        f.deleteOnExit();
+        java.nio.file.Files.write(f.toPath(),
+        		"hell\r\nhello\nhelp\t5\nhero\t20\nhelm".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        DictionaryTree unit = WordFileLoader.load(f);
+        Assertions.assertEquals(Arrays.asList("hero", "help", "hell", "hello", "helm"), unit.predict("he", 5));
+        Assertions.assertEquals(true, unit.contains("helm"));
+        unit = new DictionaryTree();
+        WordFileLoader.load(f, unit, 8);
+        Assertions.assertEquals(Arrays.asList("hero", "help", "hell", "hello", "helm"), unit.predict("he", 5));
+    }
+    
+    
+    /**
+	 * Class: RadixDictionaryTree - Test 1
+	 * 
+	 * A radix tree should give the same answers
+	 * as a dictionary tree, as edges are split
+	 * by inserts and joined again by removes
+	 */
+    @Test
+    public void radixDictionaryTree1() {
+        DictionaryTree expected = new DictionaryTree();
+        RadixDictionaryTree unit = new RadixDictionaryTree();
+        for (String word : Arrays.asList("internationalization", "international", "intern", "in", "hello", "help")) {
+        	expected.insert(word, word.length());
+        	unit.insert(word, word.length());
+        }
+        Assertions.assertEquals(expected.allWords(), unit.allWords());
+        Assertions.assertEquals(true, unit.contains("intern"));
+        Assertions.assertEquals(false, unit.contains("inter"));
+        Assertions.assertEquals(expected.predict("inte", 3), unit.predict("inte", 3));
+        Assertions.assertEquals(Optional.of("help"), unit.predict("hel"));
+        Assertions.assertEquals(expected.remove("intern"), unit.remove("intern"));
+        Assertions.assertEquals(expected.remove("help"), unit.remove("help"));
+        Assertions.assertEquals(false, unit.remove("help"));
+        Assertions.assertEquals(expected.allWords(), unit.allWords());
+        Assertions.assertEquals(expected.predict("", 20), unit.predict("", 20));
+    }
+    
+    
+    /**
+	 * Class: ArenaDictionaryTree - Test 1
+	 * 
+	 * An arena dictionary should give the same
+	 * predictions as a dictionary tree, and reuse
+	 * the nodes of removed words
+	 */
+    @Test
+    public void arenaDictionaryTree1() {
+        DictionaryTree expected = new DictionaryTree();
+        for (String word : Arrays.asList("hello", "hell", "help", "to", "tool", "hero")) {
+        	expected.insert(word, word.hashCode() % 7);
+        }
+        ArenaDictionaryTree unit = ArenaDictionaryTree.copyOf(expected);
+        Assertions.assertEquals(expected.predict("he", 10), unit.predict("he", 10));
+        Assertions.assertEquals(expected.predict(""), unit.predict(""));
+        Assertions.assertEquals(Arrays.asList("hell", "hello", "help", "hero", "to", "tool"), unit.allWords());
+        Assertions.assertEquals(expected.size(), unit.numNodes());
+        Assertions.assertEquals(true, unit.remove("tool"));
+        Assertions.assertEquals(false, unit.remove("tool"));
+        Assertions.assertEquals(false, unit.contains("tool"));
+        Assertions.assertEquals(expected.size() - 2, unit.numNodes());
+        unit.insert("top", -1);
+        Assertions.assertEquals(Optional.of("top"), unit.predict("t"));
+        Assertions.assertEquals(6, unit.numWords());
+    }
+    
+    
+    /**
+	 * Class: BigramModel - Test 1
+	 * 
+	 * Words seen most often after the previous
+	 * word should be predicted first, with the
+	 * dictionary's predictions filling the rest
+	 */
+    @Test
+    public void bigramModel1() {
+        DictionaryTree unit = new DictionaryTree();
+        unit.insert("the");
+        unit.insert("to");
+        unit.insert("tea");
+        unit.insert("hot");
+        unit.insert("tree");
+        BigramModel model = BigramModel.build(unit, Arrays.asList(
+        		"hot tea", "hot tea", "hot to", "the tree", "hot unknown tea"));
+        Assertions.assertEquals(Arrays.asList("tea", "to", "the"), model.predict("a cup of hot ", "t", 3));
+        Assertions.assertEquals(Arrays.asList("tree", "the"), model.predict("the", "t", 2));
+        Assertions.assertEquals(Arrays.asList("the", "to"), model.predict("unseen", "t", 2));
+        Assertions.assertEquals(2, model.numSuccessors("hot"));
+    }
+    
+    
+    /**
+	 * Class: DictionaryMetrics - Test 1
+	 * 
+	 * Operations should only be counted while
+	 * metrics are enabled, with predictions of
+	 * up to 10 words read from the cache
+	 */
+    @Test
+    public void dictionaryMetrics1() {
+        DictionaryTree unit = new DictionaryTree();
+        DictionaryMetrics metrics = DictionaryMetrics.INSTANCE;
+        boolean enabled = metrics.isEnabled();
+        try {
+            metrics.setEnabled(true);
+            metrics.reset();
+            unit.insert("tea");
+            unit.insert("ten");
+            Assertions.assertEquals(true, unit.contains("tea"));
+            Assertions.assertEquals(Optional.of("tea"), unit.predict("te"));
+            Assertions.assertEquals(Arrays.asList("tea", "ten"), unit.predict("t", 2));
+            Assertions.assertEquals(Arrays.asList("tea"), unit.predict("tea", 11));
+            Assertions.assertEquals(Optional.empty(), unit.predict("tx"));
+            Assertions.assertEquals(2, metrics.getInsertLatency().getCount());
+            Assertions.assertEquals(1, metrics.getContainsLatency().getCount());
+            Assertions.assertEquals(4, metrics.getPredictLatency().getCount());
+            Assertions.assertEquals(2, metrics.getCacheHits());
+            Assertions.assertEquals(1, metrics.getCacheMisses());
+            Assertions.assertEquals(1, metrics.getCandidatesExamined());
+            Assertions.assertEquals(3 + 2 + 4 + 1 + 2, metrics.getNodesVisited());
+            Assertions.assertEquals(true, metrics.getPredictLatency().getP50Nanos()
+            		<= metrics.getPredictLatency().getP99Nanos());
+            metrics.setEnabled(false);
+            unit.insert("tee");
+            unit.predict("t");
+            Assertions.assertEquals(2, metrics.getInsertLatency().getCount());
+            Assertions.assertEquals(4, metrics.getPredictLatency().getCount());
+        }
+        finally {
+            metrics.setEnabled(enabled);
+            metrics.reset();
+        }
+    }
+    
+    
+    /**
+	 * Class: DictionaryMetrics - Test 2
+	 * 
+	 * Lookups other than predict() should not
+	 * count towards the predict metrics, so
+	 * hits, misses and nodes visited stay in
+	 * step with the number of predictions
+	 */
+    @Test
+    public void dictionaryMetrics2() {
+        DictionaryTree unit = new DictionaryTree();
+        for (int i = 0; i < 20; i++) {
+            unit.insert("t" + (char) ('a' + i));
+        }
+        DictionaryMetrics metrics = DictionaryMetrics.INSTANCE;
+        boolean enabled = metrics.isEnabled();
+        try {
+            metrics.setEnabled(true);
+            metrics.reset();
+            unit.predictAll(Arrays.asList("t", "ta", "x"), 15);
+            unit.predictNodes("t", 15);
+            new UserDictionary(unit).predict("t", 15);
+            PrefixCursor cursor = new PrefixCursor(unit);
+            cursor.advance('t');
+            cursor.predict(15);
+            Assertions.assertEquals(0, metrics.getPredictLatency().getCount());
+            Assertions.assertEquals(0, metrics.getCacheHits() + metrics.getCacheMisses());
+            Assertions.assertEquals(0, metrics.getNodesVisited());
+            Assertions.assertEquals(0, metrics.getCandidatesExamined());
+            Assertions.assertEquals(15, unit.predict("t", 15).size());
+            Assertions.assertEquals(1, metrics.getPredictLatency().getCount());
+            Assertions.assertEquals(1, metrics.getCacheMisses());
+            Assertions.assertEquals(2 + 21, metrics.getNodesVisited());
+            Assertions.assertEquals(20, metrics.getCandidatesExamined());
+        }
+        finally {
+            metrics.setEnabled(enabled);
+            metrics.reset();
+        }
+    }
+    
+    
+    /**
+	 * Class: PredictionCache - Test 1
+	 * 
+	 * Repeated predictions should be read from
+	 * the cache, and changing a word should drop
+	 * the predictions of each of its prefixes
+	 */
+    @Test
+    public void predictionCache1() {
+        DictionaryTree tree = new DictionaryTree();
+        tree.insert("tea", 1);
+        tree.insert("ten", 2);
+        tree.insert("to", 3);
+        tree.insert("ant", 4);
+        PredictionCache unit = new PredictionCache(tree, 1 << 20);
+        Assertions.assertEquals(Arrays.asList("tea", "ten", "to"), unit.predict("t", 5));
+        Assertions.assertEquals(Arrays.asList("tea", "ten"), unit.predict("t", 2));
+        Assertions.assertEquals(Arrays.asList("tea", "ten", "to"), unit.predict("t", 20));
+        Assertions.assertEquals(Optional.of("ant"), unit.predict("a"));
+        Assertions.assertEquals(Optional.of("ant"), unit.predict("a"));
+        Assertions.assertEquals(2, unit.misses());
+        Assertions.assertEquals(3, unit.hits());
+        Assertions.assertEquals(2, unit.size());
+        unit.insert("tan", 0);
+        Assertions.assertEquals(1, unit.invalidations());
+        Assertions.assertEquals(Arrays.asList("tan", "tea"), unit.predict("t", 2));
+        Assertions.assertEquals(Optional.of("ant"), unit.predict("a"));
+        unit.remove("ant");
+        Assertions.assertEquals(Optional.empty(), unit.predict("a"));
+        Assertions.assertEquals(true, unit.estimatedBytes() <= unit.maximumBytes());
+        Assertions.assertEquals(0.5, unit.hitRate());
+    }
+    
+    
+    /**
+	 * Class: PredictionCache - Test 2
+	 * 
+	 * A full cache should only let in a prefix
+	 * asked for more often than the one it evicts
+	 */
+    @Test
+    public void predictionCache2() {
+        DictionaryTree tree = new DictionaryTree();
+        tree.insert("apple");
+        tree.insert("banana");
+        tree.insert("cherry");
+        PredictionCache unit = new PredictionCache(tree, 200);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(Arrays.asList("apple"), unit.predict("a", 1));
+        }
+        Assertions.assertEquals(Arrays.asList("banana"), unit.predict("b", 1));
+        Assertions.assertEquals(1, unit.rejections());
+        Assertions.assertEquals(Arrays.asList("banana"), unit.predict("b", 1));
+        Assertions.assertEquals(Arrays.asList("banana"), unit.predict("b", 1));
+        Assertions.assertEquals(Arrays.asList("banana"), unit.predict("b", 1));
+        Assertions.assertEquals(1, unit.evictions());
+        Assertions.assertEquals(Arrays.asList("banana"), unit.predict("b", 1));
+        Assertions.assertEquals(1, unit.size());
+        Assertions.assertEquals(3, unit.rejections());
+        Assertions.assertEquals(5, unit.misses());
+    }
+    
+    
+    /**
+	 * Class: PredictionCache - Test 3
+	 * 
+	 * Entries evicted, rejected or dropped while
+	 * several threads predict and another changes
+	 * the dictionary should never leave a stale
+	 * prediction or overflow the cache
+	 */
+    @Test
+    public void predictionCache3() throws Exception {
+        DictionaryTree tree = new DictionaryTree();
+        for (int i = 0; i < 26 * 26; i++) {
+            tree.insert("" + (char) ('a' + i / 26) + (char) ('a' + i % 26), i);
+        }
+        PredictionCache unit = new PredictionCache(tree, 2048);
+        java.util.concurrent.ExecutorService threads = java.util.concurrent.Executors.newFixedThreadPool(5);
+        java.util.List<java.util.concurrent.Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            results.add(threads.submit(() -> {
+                java.util.Random random = new java.util.Random(offset);
+                for (int i = 0; i < 20000; i++) {
+                    String prefix = "" + (char) ('a' + (int) Math.sqrt(random.nextInt(26 * 26)));
+                    Assertions.assertEquals(true, unit.predict(prefix, 1 + random.nextInt(5)).size() > 0);
+                }
+            }));
+        }
+        results.add(threads.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                unit.insert("" + (char) ('a' + i % 26) + "z" + i, -i);
+            }
+        }));
+        for (java.util.concurrent.Future<?> result : results) {
+            result.get();
+        }
+        threads.shutdown();
+        Assertions.assertEquals(true, unit.evictions() + unit.rejections() > 0);
+        Assertions.assertEquals(true, unit.estimatedBytes() <= unit.maximumBytes());
+        for (int i = 0; i < 26; i++) {
+            String prefix = "" + (char) ('a' + i);
+            Assertions.assertEquals(tree.predict(prefix, 5), unit.predict(prefix, 5));
+            Assertions.assertEquals(tree.predict(prefix, 3), unit.predict(prefix, 3));
+        }
+    }
+    
+    
+    /**
+	 * Class: DictionaryJournal - Test 1
+	 * 
+	 * Words inserted and removed through the journal
+	 * should be there after reopening it, whether or
+	 * not they were compacted, and a torn record at
+	 * the end of the journal should be cut off
+	 */
+    @Test
+    public void dictionaryJournal1() throws java.io.IOException {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("journal").toFile();
+        try (DictionaryJournal unit = DictionaryJournal.open(directory)) {
+            unit.insert("tea");
+            unit.insert("ten", -5);
+            unit.insert("to");
+            Assertions.assertEquals(true, unit.remove("to"));
+            Assertions.assertEquals(Arrays.asList("ten", "tea"), unit.tree().predict("t", 5));
+        }
+        try (DictionaryJournal unit = DictionaryJournal.open(directory)) {
+            Assertions.assertEquals(Arrays.asList("ten", "tea"), unit.tree().predict("t", 5));
+            unit.compact();
+            unit.insert("toe");
+            unit.remove("tea");
+        }
+        java.io.File[] segments = directory.listFiles((dir, name) -> name.startsWith("journal-"));
+        Arrays.sort(segments);
+        java.nio.file.Files.write(segments[segments.length - 1].toPath(), new byte[] {0, 0, 0, 40, 1, 2},
+        		java.nio.file.StandardOpenOption.APPEND);
+        try (DictionaryJournal unit = DictionaryJournal.open(directory)) {
+            Assertions.assertEquals(Arrays.asList("ten", "toe"), unit.tree().predict("t", 5));
+            Assertions.assertEquals(4, unit.tree().overallPopularity());
+            unit.insert("tan");
+            Assertions.assertEquals(Arrays.asList("ten", "toe", "tan"), unit.tree().predict("t", 5));
+        }
+        try (DictionaryJournal unit = DictionaryJournal.open(directory)) {
+            Assertions.assertEquals(Arrays.asList("ten", "toe", "tan"), unit.tree().predict("t", 5));
+        }
+        for (java.io.File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+    
+    
+    /**
+	 * Class: DictionaryJournal - Test 2
+	 * 
+	 * A change whose record could not be written
+	 * should fail without reaching the dictionary
+	 * or any base image compacted afterwards
+	 */
+    @Test
+    public void dictionaryJournal2() throws java.io.IOException {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("journal").toFile();
+        DictionaryJournal unit = DictionaryJournal.open(directory, 1, Long.MAX_VALUE);
+        unit.insert("tea", 1);
+        for (java.io.File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+        Assertions.assertThrows(java.io.IOException.class, () -> unit.insert("ten", 2));
+        Assertions.assertEquals(false, unit.tree().contains("ten"));
+        Assertions.assertThrows(java.io.IOException.class, () -> unit.remove("tea"));
+        Assertions.assertEquals(true, unit.tree().contains("tea"));
+        directory.mkdir();
+        unit.compact();
+        Assertions.assertThrows(java.io.IOException.class, unit::close);
+        try (DictionaryJournal reopened = DictionaryJournal.open(directory)) {
+            Assertions.assertEquals(Arrays.asList("tea"), reopened.tree().predict("t", 5));
+        }
+        for (java.io.File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+    
+    
+    /**
+	 * Class: DictionaryJournal - Test 3
+	 * 
+	 * Changes made from several threads at once,
+	 * while segments roll over and base images are
+	 * compacted in the background, should all be
+	 * there after reopening the journal
+	 */
+    @Test
+    public void dictionaryJournal3() throws Exception {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("journal").toFile();
+        try (DictionaryJournal unit = DictionaryJournal.open(directory, 512, 2048)) {
+            java.util.concurrent.ExecutorService writers = java.util.concurrent.Executors.newFixedThreadPool(4);
+            java.util.List<java.util.concurrent.Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                results.add(writers.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        unit.insert("w" + offset + "-" + i, i);
+                        if (i % 2 == 1) {
+                            Assertions.assertEquals(true, unit.remove("w" + offset + "-" + (i - 1)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (java.util.concurrent.Future<Void> result : results) {
+                result.get();
+            }
+            writers.shutdown();
+            Assertions.assertEquals(500, unit.tree().predict("w", 1000).size());
+        }
+        Assertions.assertEquals(true, directory.listFiles((dir, name) -> name.startsWith("base-")).length > 0);
+        try (DictionaryJournal unit = DictionaryJournal.open(directory)) {
+            Assertions.assertEquals(500, unit.tree().predict("w", 1000).size());
+            for (int t = 0; t < 4; t++) {
+                Assertions.assertEquals(true, unit.tree().contains("w" + t + "-249"));
+                Assertions.assertEquals(false, unit.tree().contains("w" + t + "-248"));
+            }
+        }
+        for (java.io.File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+    
+    
+    /**
+	 * Class: DictionaryJournal - Test 4
+	 * 
+	 * Closing the journal with a compaction still
+	 * to run should wait for it, so nothing in the
+	 * directory changes once close() has returned
+	 */
+    @Test
+    public void dictionaryJournal4() throws Exception {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("journal").toFile();
+        for (int round = 0; round < 20; round++) {
+            DictionaryJournal unit = DictionaryJournal.open(directory, 1 << 20, 1);
+            for (int i = 0; i < 200; i++) {
+                unit.insert("w" + round + "-" + i, i);
+            }
+            unit.close();
+            java.util.Map<String, Long> closed = new java.util.TreeMap<>();
+            for (java.io.File f : directory.listFiles()) {
+                closed.put(f.getName(), f.length());
+            }
+            Thread.sleep(20);
+            java.util.Map<String, Long> later = new java.util.TreeMap<>();
+            for (java.io.File f : directory.listFiles()) {
+                later.put(f.getName(), f.length());
+            }
+            Assertions.assertEquals(closed, later);
+        }
+        try (DictionaryJournal unit = DictionaryJournal.open(directory)) {
+            Assertions.assertEquals(200, unit.tree().predict("w19-", 1000).size());
+            Assertions.assertEquals(true, unit.tree().contains("w0-199"));
+        }
+        for (java.io.File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+    
+    
+    /**
+	 * Class: UserDictionary - Test 1
+	 * 
+	 * A user's inserts, removes and popularity
+	 * changes should be merged with the shared
+	 * dictionary without changing it
+	 */
+    @Test
+    public void userDictionary1() {
+        DictionaryTree base = new DictionaryTree();
+        base.insert("tea", 1);
+        base.insert("ten", 2);
+        base.insert("to", 3);
+        base.insert("ant", 4);
+        UserDictionary unit = new UserDictionary(base);
+        unit.insert("tofu", 0);
+        unit.insert("to", 5);
+        Assertions.assertEquals(true, unit.remove("tea"));
+        Assertions.assertEquals(false, unit.remove("tin"));
+        Assertions.assertEquals(Arrays.asList("tofu", "ten", "to"), unit.predict("t", 5));
+        Assertions.assertEquals(Arrays.asList("tofu", "ten"), unit.predict("t", 2));
+        Assertions.assertEquals(Optional.of("ant"), unit.predict("a"));
+        Assertions.assertEquals(false, unit.contains("tea"));
+        Assertions.assertEquals(true, unit.contains("tofu"));
+        Assertions.assertEquals(true, unit.remove("tofu"));
+        Assertions.assertEquals(false, unit.contains("tofu"));
+        Assertions.assertEquals(2, unit.numChanges());
+        Assertions.assertEquals(Arrays.asList("tea", "ten", "to"), base.predict("t", 5));
+        Assertions.assertEquals(false, base.contains("tofu"));
+    }
+    
+    
+    /**
+	 * Class: UserDictionary - Test 2
+	 * 
+	 * Only the shared words a user has removed
+	 * or re-ranked should make the shared
+	 * dictionary look for more words, however
+	 * many words of their own the user has
+	 */
+    @Test
+    public void userDictionary2() {
+        int[] asked = new int[1];
+        DictionaryTree base = new DictionaryTree() {
+            @Override
+            java.util.List<DictionaryTree> predictNodes(String prefix, int n) {
+                asked[0] = n;
+                return super.predictNodes(prefix, n);
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            base.insert("t" + (char) ('a' + i), i);
+        }
+        UserDictionary unit = new UserDictionary(base);
+        for (int i = 0; i < 100; i++) {
+            unit.insert("tz" + i, 100 + i);
+        }
+        unit.remove("ta");
+        unit.insert("tc", 50);
+        Assertions.assertEquals(Arrays.asList("tb", "td", "te"), unit.predict("t", 3));
+        Assertions.assertEquals(5, asked[0]);
+        Assertions.assertEquals(Arrays.asList("tz0", "tz1"), unit.predict("tz", 2));
+        Assertions.assertEquals(2, asked[0]);
+        Assertions.assertEquals(119, unit.predict("t", Integer.MAX_VALUE).size());
+        Assertions.assertEquals("tc", unit.predict("t", Integer.MAX_VALUE).get(18));
+    }
+    
+    
+    /**
+	 * Class: UserDictionary - Test 3
+	 * 
+	 * Shared words removed and inserted again,
+	 * ties with shared words, empty prefixes and
+	 * predictions of no words should be merged
+	 * as a single dictionary would rank them
+	 */
+    @Test
+    public void userDictionary3() {
+        DictionaryTree base = new DictionaryTree();
+        base.insert("tea", 1);
+        base.insert("ten", 2);
+        base.insert("to", 3);
+        UserDictionary unit = new UserDictionary(base);
+        Assertions.assertEquals(true, unit.remove("ten"));
+        unit.insert("ten", 0);
+        unit.insert("tab", 3);
+        Assertions.assertEquals(Arrays.asList("ten", "tea", "tab", "to"), unit.predict("t", 5));
+        Assertions.assertEquals(Arrays.asList(), unit.predict("t", 0));
+        Assertions.assertEquals(Arrays.asList(), unit.predict("x", 3));
+        Assertions.assertEquals(Arrays.asList("ten", "tea"), unit.predict("", 2));
+        Assertions.assertEquals(true, unit.remove("tea"));
+        Assertions.assertEquals(Optional.empty(), unit.predict("tea"));
+        Assertions.assertEquals(Arrays.asList("ten"), unit.predict("te", 5));
+        Assertions.assertEquals(true, unit.remove("tab"));
+        Assertions.assertEquals(false, unit.remove("tab"));
+        Assertions.assertEquals(2, unit.numChanges());
+        unit.insert("tea", 4);
+        Assertions.assertEquals(Arrays.asList("ten", "to", "tea"), unit.predict("t", 5));
+        Assertions.assertEquals(Arrays.asList("tea", "ten", "to"), base.predict("t", 5));
+    }
+    
+    
+    /**
+	 * Class: Utf8DictionaryTree - Test 1
+	 * 
+	 * Words outside the Basic Multilingual Plane
+	 * and unpaired surrogates should be stored,
+	 * predicted and measured by code point
+	 */
+    @Test
+    public void utf8DictionaryTree1() {
+        Utf8DictionaryTree unit = new Utf8DictionaryTree();
+        unit.insert("\uD83D\uDE00a");
+        unit.insert("\uD83D\uDE01");
+        unit.insert("\uD83Dx");
+        unit.insert("\u043F\u0440\u0438\u0432\u0435\u0442");
+        unit.insert("\u043F\u0440\u0438");
+        Assertions.assertEquals(true, unit.contains("\uD83D\uDE00a"));
+        Assertions.assertEquals(true, unit.contains("\uD83Dx"));
+        Assertions.assertEquals(false, unit.contains("\uD83D"));
+        Assertions.assertEquals(false, unit.contains("\uD83D\uDE00"));
+        Assertions.assertEquals(Arrays.asList("\uD83D\uDE00a", "\uD83D\uDE01", "\uD83Dx"), unit.predict("\uD83D", 5));
+        Assertions.assertEquals(Arrays.asList("\u043F\u0440\u0438\u0432\u0435\u0442", "\u043F\u0440\u0438"), unit.predict("\u043F\u0440", 5));
+        Assertions.assertEquals(Optional.of("\uD83D\uDE00a"), unit.predict("\uD83D\uDE00"));
+        Assertions.assertEquals("\u043F\u0440\u0438\u0432\u0435\u0442", unit.longestWord());
+        Assertions.assertEquals(false, unit.remove("\u043F\u0440\u0438"));
+        Assertions.assertEquals(true, unit.remove("\uD83D\uDE00a"));
+        Assertions.assertEquals(Arrays.asList("\uD83D\uDE01", "\uD83Dx"), unit.predict("\uD83D", 5));
+        Assertions.assertEquals(Arrays.asList("\u043F\u0440\u0438\u0432\u0435\u0442", "\uD83Dx", "\uD83D\uDE01"), unit.allWords());
+        Assertions.assertEquals(3, unit.numWords());
+    }
+    
+    
+    /**
+	 * Class: Utf8DictionaryTree - Test 2
+	 * 
+	 * Lookups from several threads at once
+	 * should not disturb each other
+	 */
+    @Test
+    public void utf8DictionaryTree2() throws Exception {
+        Utf8DictionaryTree unit = new Utf8DictionaryTree();
+        java.util.List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String word = new StringBuilder().appendCodePoint(0x430 + i % 32).appendCodePoint(0x1F600 + i / 32).toString();
+            words.add(word);
+            unit.insert(word, i);
+        }
+        java.util.concurrent.ExecutorService readers = java.util.concurrent.Executors.newFixedThreadPool(4);
+        java.util.List<java.util.concurrent.Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            results.add(readers.submit(() -> {
+                for (int i = offset; i < 20000; i += 4) {
+                    String word = words.get(i % words.size());
+                    if (!unit.contains(word) || unit.contains(word + "x")
+                            || !unit.predict(word.substring(0, 1), 1).get(0).equals(words.get(i % words.size() % 32))) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (java.util.concurrent.Future<Boolean> result : results) {
+            Assertions.assertEquals(true, result.get());
+        }
+        readers.shutdown();
+    }
+    
+    
     
     
     
@@ -0,0 +1,454 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A cache of predictions in front of a dictionary, so the prefixes typed
+ * most often are answered without walking the dictionary at all.
+ *
+ * Entries are keyed by prefix and hold the longest prediction asked for
+ * so far, as the n best words of a prefix are the first n of its m best
+ * words for any m above n. A request for more words than an entry holds
+ * is a miss which replaces the entry.
+ *
+ * The cache is bounded by an estimate of the memory its entries use.
+ * When a new entry does not fit, it only goes in if it has been asked
+ * for more often than each entry that would have to make room for it,
+ * the victims being the least often asked for of a few entries picked
+ * at random. How often each prefix has been asked for is counted in a
+ * count-min sketch of 4-bit counters, which are all halved every so
+ * often so that prefixes asked for long ago are forgotten.
+ *
+ * Hits only read the map. Misses read the dictionary under a shared
+ * lock, and writes to the dictionary take the lock exclusively and drop
+ * the entries of every prefix of the word they change, so an entry can
+ * never be filled in from a dictionary that has since changed.
+ */
+public class PredictionCache {
+
+    /**
+     * The number of entries looked at when choosing one to evict
+     */
+    private static final int EVICTION_SAMPLES = 8;
+
+    /**
+     * The rough number of bytes an entry takes up besides its prefix and
+     * words, used to size the frequency sketch
+     */
+    private static final int ENTRY_BYTES = 128;
+
+    /**
+     * The predictions cached for a prefix. The words are the dictionary's
+     * own strings, so an entry only pays for the list holding them.
+     */
+    private static final class Entry {
+        private final String prefix;
+        private final int n;
+        private final List<String> words;
+        private final long bytes;
+        private int index;
+
+        private Entry(String prefix, int n, List<String> words) {
+            this.prefix = prefix;
+            this.n = n;
+            this.words = words;
+            this.bytes = ENTRY_BYTES + 2L * prefix.length() + 4L * words.size();
+        }
+
+        /**
+         * @return whether this entry holds the n best words of its prefix
+         */
+        private boolean covers(int numOfWords) {
+            return numOfWords <= n || words.size() < n;
+        }
+    }
+
+    private final DictionaryTree tree;
+    private final long maximumBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ArrayList<Entry> sample = new ArrayList<>();
+    private final FrequencySketch sketch;
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param tree the dictionary whose predictions are cached, which must
+     * only be changed through this cache from now on
+     * @param maximumBytes roughly how much memory the entries may take up
+     */
+    PredictionCache(DictionaryTree tree, long maximumBytes) {
+        this.tree = tree;
+        this.maximumBytes = maximumBytes;
+        this.sketch = new FrequencySketch((int) Math.min(Math.max(maximumBytes / ENTRY_BYTES, 16), 1 << 24));
+    }
+
+    /**
+     * Inserts the given word into the dictionary, dropping the cached
+     * predictions of every prefix of the word.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        lock.writeLock().lock();
+        try {
+            tree.insert(word);
+            invalidate(word);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts the given word into the dictionary with the given popularity,
+     * dropping the cached predictions of every prefix of the word.
+     *
+     * @param word the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        lock.writeLock().lock();
+        try {
+            tree.insert(word, popularity);
+            invalidate(word);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given word from the dictionary, dropping the cached
+     * predictions of every prefix of the word.
+     *
+     * @param word the word to delete from the dictionary
+     * @return true if no other word started with the deleted word; false otherwise
+     */
+    boolean remove(String word) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = tree.remove(word);
+            invalidate(word);
+            return removed;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that the given word was picked by a user, dropping the cached
+     * predictions of every prefix of the word and of every word whose
+     * selections have faded since.
+     *
+     * @param word the word that was picked
+     * @return true if the word is in the dictionary; false otherwise
+     */
+    boolean recordSelection(String word) {
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (String reranked : tree.ageSelections(now)) {
+                invalidate(reranked);
+            }
+            boolean found = tree.recordSelection(word, now);
+            if (found) {
+                invalidate(word);
+            }
+            return found;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in the dictionary; false otherwise
+     */
+    boolean contains(String word) {
+        lock.readLock().lock();
+        try {
+            return tree.contains(word);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return the most popular word that starts with the given prefix, or
+     * an empty optional if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        List<String> words = predict(prefix, 1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix,
+     * reading them from the cache if they are there and asking the dictionary
+     * otherwise.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        sketch.increment(prefix);
+        Entry entry = entries.get(prefix);
+        if (entry != null && entry.covers(n)) {
+            hits.increment();
+            return new ArrayList<>(entry.words.subList(0, Math.min(n, entry.words.size())));
+        }
+        misses.increment();
+        lock.readLock().lock();
+        try {
+            List<String> words = tree.predict(prefix, n);
+            admit(new Entry(prefix, n, Collections.unmodifiableList(new ArrayList<>(words))));
+            return words;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Helper method for predict()
+     * Adds a new entry, replacing any entry for the
+     * same prefix. If it does not fit, the entries
+     * asked for least often out of a few picked at
+     * random are evicted to make room, but only if
+     * each of them was asked for less often than
+     * the new entry. Otherwise the new entry is
+     * rejected and the cache is left as it was
+     *
+     * @param entry The entry to add
+     */
+    private synchronized void admit(Entry entry) {
+        Entry old = entries.get(entry.prefix);
+        if (old != null && old.covers(entry.n)) {
+            return;
+        }
+        long needed = bytes + entry.bytes - (old == null ? 0 : old.bytes) - maximumBytes;
+        ArrayList<Entry> victims = new ArrayList<>();
+        if (needed > 0) {
+            int frequency = sketch.frequency(entry.prefix);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (needed > 0) {
+                Entry victim = null;
+                for (int i = 0; i < EVICTION_SAMPLES && victims.size() < sample.size(); i++) {
+                    Entry candidate = sample.get(random.nextInt(sample.size()));
+                    if (candidate != old && !victims.contains(candidate)
+                            && (victim == null || sketch.frequency(candidate.prefix) < sketch.frequency(victim.prefix))) {
+                        victim = candidate;
+                    }
+                }
+                if (victim == null || sketch.frequency(victim.prefix) >= frequency) {
+                    rejections.increment();
+                    return;
+                }
+                victims.add(victim);
+                needed -= victim.bytes;
+            }
+        }
+        for (Entry victim : victims) {
+            discard(victim);
+            evictions.increment();
+        }
+        if (old != null) {
+            discard(old);
+        }
+        entry.index = sample.size();
+        sample.add(entry);
+        entries.put(entry.prefix, entry);
+        bytes += entry.bytes;
+    }
+
+    /**
+     * Helper method for insert(), remove() and recordSelection()
+     * Drops the entries of every prefix of the word
+     *
+     * @param word The word that was changed
+     */
+    private synchronized void invalidate(String word) {
+        for (int i = 0; i <= word.length(); i++) {
+            Entry entry = entries.get(word.substring(0, i));
+            if (entry != null) {
+                discard(entry);
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Helper method for admit() and invalidate()
+     * Removes an entry from the map and from the
+     * list entries are sampled from, moving the
+     * last entry of the list into its place
+     *
+     * @param entry The entry to remove
+     */
+    private void discard(Entry entry) {
+        entries.remove(entry.prefix);
+        Entry last = sample.remove(sample.size() - 1);
+        if (last != entry) {
+            last.index = entry.index;
+            sample.set(entry.index, last);
+        }
+        bytes -= entry.bytes;
+    }
+
+    /**
+     * @return the number of predictions answered from the cache
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of predictions the dictionary had to be asked for
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of predictions answered from the cache, or 0 if
+     * none have been asked for
+     */
+    double hitRate() {
+        long hits = hits();
+        long requests = hits + misses();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the number of entries evicted to make room for others
+     */
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of new entries not let in because they were asked
+     * for less often than the entries they would have replaced
+     */
+    long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return the number of entries dropped because a word they could
+     * contain was changed
+     */
+    long invalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return the number of prefixes whose predictions are cached
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return roughly how many bytes the entries take up
+     */
+    synchronized long estimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return roughly how many bytes the entries may take up
+     */
+    long maximumBytes() {
+        return maximumBytes;
+    }
+
+    /**
+     * Counts roughly how often each prefix is asked for, in four rows of
+     * 4-bit counters packed sixteen to a long. A prefix's count is the
+     * smallest of its four counters, which may be too high because of
+     * other prefixes sharing its counters but is never too low. Once
+     * there have been ten times as many increments as there are expected
+     * entries, every counter is halved.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+        private final AtomicLongArray table;
+        private final int mask;
+        private final int resetAfter;
+        private final AtomicInteger additions = new AtomicInteger();
+
+        private FrequencySketch(int expectedEntries) {
+            int length = Integer.highestOneBit(expectedEntries - 1) << 1;
+            this.table = new AtomicLongArray(length);
+            this.mask = length - 1;
+            this.resetAfter = 10 * expectedEntries;
+        }
+
+        private int frequency(String prefix) {
+            int frequency = 15;
+            for (long seed : SEEDS) {
+                long hash = hash(prefix, seed);
+                long counters = table.get(index(hash));
+                frequency = Math.min(frequency, (int) (counters >>> shift(hash)) & 15);
+            }
+            return frequency;
+        }
+
+        private void increment(String prefix) {
+            for (long seed : SEEDS) {
+                long hash = hash(prefix, seed);
+                int index = index(hash);
+                int shift = shift(hash);
+                long counters;
+                do {
+                    counters = table.get(index);
+                } while ((counters >>> shift & 15) != 15 && !table.compareAndSet(index, counters, counters + (1L << shift)));
+            }
+            if (additions.incrementAndGet() == resetAfter) {
+                for (int i = 0; i < table.length(); i++) {
+                    long counters;
+                    do {
+                        counters = table.get(i);
+                    } while (!table.compareAndSet(i, counters, counters >>> 1 & 0x7777777777777777L));
+                }
+                additions.addAndGet(-resetAfter / 2);
+            }
+        }
+
+        private static long hash(String prefix, long seed) {
+            long hash = (prefix.hashCode() ^ seed) * 0x9E3779B97F4A7C15L;
+            return hash ^ hash >>> 32;
+        }
+
+        private int index(long hash) {
+            return (int) (hash >>> 4) & mask;
+        }
+
+        private static int shift(long hash) {
+            return ((int) hash & 15) << 2;
+        }
+    }
+
+}
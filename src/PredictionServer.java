@@ -0,0 +1,203 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Serves one loaded dictionary to many local clients over TCP, so that
+ * several processes can share a single copy of the tree.
+ *
+ * The protocol is one request per line, answered by one line:
+ * "contains WORD" is answered with "true" or "false", and
+ * "predict PREFIX [N]" with the (at most) N predicted words separated
+ * by tabs, N being 1 if it is left out and at most MAX_WORDS. Any other
+ * line is answered with a line starting with "error".
+ * Clients may send many requests without waiting for the replies; the
+ * requests that have already arrived are answered in a single write, up to
+ * MAX_BATCH_REQUESTS requests or MAX_BATCH_BYTES bytes of replies at a time.
+ * A request the dictionary fails on is answered with an error line too.
+ *
+ * Each connection gets its own virtual thread when the JVM supports them,
+ * and a pooled platform thread otherwise. The dictionary must not be
+ * changed while the server is running, as its queries are not synchronised.
+ */
+public class PredictionServer implements Closeable {
+
+    /**
+     * The largest number of requests answered in a single write
+     */
+    private static final int MAX_BATCH_REQUESTS = 256;
+
+    /**
+     * The number of bytes of replies after which they are written without
+     * waiting for the replies to the rest of the requests that have arrived
+     */
+    private static final int MAX_BATCH_BYTES = 64 << 10;
+
+    /**
+     * The largest number of words a single request is answered with
+     */
+    private static final int MAX_WORDS = 1000;
+
+    private final Predicate<String> contains;
+    private final BiFunction<String, Integer, List<String>> predict;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = newConnectionExecutor();
+
+    /**
+     * Opens a server socket on the loopback address.
+     *
+     * @param contains the dictionary's contains() method
+     * @param predict the dictionary's predict(prefix, n) method
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the socket could not be opened
+     */
+    PredictionServer(Predicate<String> contains, BiFunction<String, Integer, List<String>> predict, int port)
+            throws IOException {
+        this.contains = contains;
+        this.predict = predict;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task on JVMs which
+     * have them, or a cached thread pool on older ones
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     *
+     * @throws IOException if accepting a connection fails for any reason other than the server being closed
+     */
+    void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    /**
+     * Answers the requests of one client until it disconnects, collecting
+     * the replies to the requests that have already arrived, up to the
+     * batch limits, before writing them all at once.
+     *
+     * @param socket the client's connection
+     */
+    private void handle(Socket socket) {
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8))) {
+            client.setTcpNoDelay(true);
+            OutputStream out = client.getOutputStream();
+            StringBuilder replies = new StringBuilder();
+            String request;
+            while ((request = in.readLine()) != null) {
+                reply(request, replies);
+                int batched = 1;
+                while (batched < MAX_BATCH_REQUESTS && replies.length() < MAX_BATCH_BYTES
+                        && in.ready() && (request = in.readLine()) != null) {
+                    reply(request, replies);
+                    ++batched;
+                }
+                out.write(replies.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                replies.setLength(0);
+            }
+        }
+        catch (IOException e) {
+            // the client went away; there is nobody left to answer
+        }
+    }
+
+    /**
+     * Answers a single request, with an error line if the dictionary fails
+     * to, so one bad request cannot drop the connection.
+     *
+     * @param request the request line
+     * @param replies the replies waiting to be written, which the reply is added to
+     */
+    private void reply(String request, StringBuilder replies) {
+        int start = replies.length();
+        try {
+            answer(request, replies);
+        }
+        catch (RuntimeException | Error e) {
+            replies.setLength(start);
+            replies.append("error failed: ").append(String.valueOf(e).replace('\n', ' ')).append('\n');
+        }
+    }
+
+    /**
+     * Helper method for reply()
+     * Parses a request and asks the dictionary
+     *
+     * @param request The request line
+     * @param replies The replies waiting to be written, which the reply is added to
+     */
+    private void answer(String request, StringBuilder replies) {
+        String[] parts = request.split(" ");
+        if (parts.length == 2 && parts[0].equals("contains")) {
+            replies.append(contains.test(parts[1]));
+        }
+        else if ((parts.length == 2 || parts.length == 3) && parts[0].equals("predict")) {
+            int n;
+            try {
+                n = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+            }
+            catch (NumberFormatException e) {
+                replies.append("error not a number: ").append(parts[2]).append('\n');
+                return;
+            }
+            n = Math.max(0, Math.min(n, MAX_WORDS));
+            replies.append(String.join("\t", predict.apply(parts[1], n)));
+        }
+        else {
+            replies.append("error unknown request: ").append(request);
+        }
+        replies.append('\n');
+    }
+
+    /**
+     * Stops accepting connections and stops the threads answering them.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+}
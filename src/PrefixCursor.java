@@ -0,0 +1,108 @@
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tracks a prefix that is typed one letter at a time, remembering the
+ * node reached after every letter so that typing or deleting a letter
+ * never has to walk the tree again from the root.
+ * The cursor should be reset after words are removed from the tree,
+ * as the nodes it remembers may no longer be part of it.
+ */
+public class PrefixCursor {
+
+    private final StringBuilder prefix = new StringBuilder();
+    private DictionaryTree[] path = new DictionaryTree[16];
+    private int matched = 0;
+
+    /**
+     * @param root the dictionary the prefix is typed against
+     */
+    public PrefixCursor(DictionaryTree root) {
+        path[0] = root;
+    }
+
+    /**
+     * Adds a letter to the end of the prefix.
+     *
+     * @param letter the letter typed
+     * @return true if some word still starts with the prefix; false otherwise
+     */
+    boolean advance(char letter) {
+        if (matched == prefix.length()) {
+            DictionaryTree next = path[matched].child(letter);
+            if (next != null) {
+                if (matched + 1 == path.length) {
+                    DictionaryTree[] grown = new DictionaryTree[path.length * 2];
+                    System.arraycopy(path, 0, grown, 0, path.length);
+                    path = grown;
+                }
+                path[++matched] = next;
+            }
+        }
+        prefix.append(letter);
+        return matched == prefix.length();
+    }
+
+    /**
+     * Deletes the last letter of the prefix, if there is one.
+     *
+     * @return true if some word still starts with the prefix; false otherwise
+     */
+    boolean backspace() {
+        if (prefix.length() > 0) {
+            if (matched == prefix.length()) {
+                path[matched--] = null;
+            }
+            prefix.setLength(prefix.length() - 1);
+        }
+        return matched == prefix.length();
+    }
+
+    /**
+     * Clears the prefix so that typing starts again from the root.
+     */
+    void reset() {
+        while (matched > 0) {
+            path[matched--] = null;
+        }
+        prefix.setLength(0);
+    }
+
+    /**
+     * @return the letters typed so far
+     */
+    String prefix() {
+        return prefix.toString();
+    }
+
+    /**
+     * @return true if the prefix typed so far is itself a word in the dictionary
+     */
+    boolean isWord() {
+        return matched == prefix.length() && path[matched].isWord();
+    }
+
+    /**
+     * @return the most popular word starting with the prefix, or an empty optional
+     * if no such word is found
+     */
+    Optional<String> predict() {
+        List<String> words = predict(1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words starting with the prefix.
+     *
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words, or an empty list if no word
+     * starts with the prefix
+     */
+    List<String> predict(int n) {
+        if (matched != prefix.length()) {
+            return List.of();
+        }
+        return path[matched].predictHelper(n);
+    }
+
+}
@@ -0,0 +1,454 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * A dictionary laid out as a radix (Patricia) tree: every chain of nodes
+ * with a single child and no word is collapsed into one edge, so a long
+ * unbranched tail like that of "internationalization" costs one node
+ * instead of one node per letter.
+ *
+ * An edge's label is never copied out of the words. Each node points at
+ * a word which passes through it, and its label is the slice of that
+ * word between the depth of its parent and its own depth.
+ *
+ * It answers insert, remove, contains, predict and allWords exactly as
+ * DictionaryTree does, listing words in the same order. Like
+ * DictionaryTree, it is not safe to change from more than one thread.
+ */
+public class RadixDictionaryTree {
+
+    /**
+     * The number of most popular descendant words cached at every node
+     */
+    private static final int CACHE_SIZE = 10;
+
+    private static final char[] NO_LETTERS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    /**
+     * Orders end-of-word nodes from most to least popular (lower popularity
+     * first), breaking ties alphabetically so predictions are deterministic
+     */
+    private static final Comparator<Node> RANKING =
+            Comparator.comparingInt((Node node) -> node.popularity).thenComparing(node -> node.word);
+
+    /**
+     * A node and the edge leading to it. The edge is labelled with the
+     * characters of source from start up to end, and every word below
+     * the node starts with the characters of source up to end.
+     * Children are kept in the order they were added, with the first
+     * letter of each child's edge in letters.
+     */
+    private static final class Node {
+        private String source;
+        private int start;
+        private int end;
+        private char[] letters = NO_LETTERS;
+        private Node[] children = NO_NODES;
+        private String word;
+        private int popularity;
+        private Node[] topWords = NO_NODES;
+
+        private Node(String source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        private int indexOf(char letter) {
+            for (int i = 0; i < letters.length; i++) {
+                if (letters[i] == letter) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void addChild(Node child) {
+            letters = Arrays.copyOf(letters, letters.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            letters[letters.length - 1] = child.source.charAt(child.start);
+            children[children.length - 1] = child;
+        }
+
+        private void removeChild(int index) {
+            char[] newLetters = new char[letters.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(letters, 0, newLetters, 0, index);
+            System.arraycopy(letters, index + 1, newLetters, index, newLetters.length - index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+            letters = newLetters.length == 0 ? NO_LETTERS : newLetters;
+            children = newChildren.length == 0 ? NO_NODES : newChildren;
+        }
+    }
+
+    private final Node root = new Node("", 0, 0);
+    private int overallPopularity = 1;
+    private Node[] path = new Node[16];
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists, nothing will change.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        insert(word, overallPopularity);
+        ++overallPopularity;
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists, the popularity will be overriden by the given value.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        Node node = root;
+        int depth = 0;
+        int length = 0;
+        path[length++] = node;
+        while (depth < word.length()) {
+            int index = node.indexOf(word.charAt(depth));
+            if (index < 0) {
+                Node leaf = new Node(word, depth, word.length());
+                node.addChild(leaf);
+                node = leaf;
+                depth = word.length();
+            }
+            else {
+                Node child = node.children[index];
+                int matched = depth;
+                while (matched < child.end && matched < word.length()
+                        && child.source.charAt(matched) == word.charAt(matched)) {
+                    ++matched;
+                }
+                if (matched < child.end) {
+                    Node split = new Node(child.source, child.start, matched);
+                    split.topWords = child.topWords;
+                    child.start = matched;
+                    split.addChild(child);
+                    node.children[index] = split;
+                    child = split;
+                }
+                node = child;
+                depth = matched;
+            }
+            if (length == path.length) {
+                path = Arrays.copyOf(path, 2 * length);
+            }
+            path[length++] = node;
+        }
+
+        node.word = word;
+        node.popularity = popularity;
+        for (int i = length - 1; i >= 0; i--) {
+            cacheWord(path[i], node);
+        }
+    }
+
+    /**
+     * Removes the specified word from this dictionary.
+     * Returns true if no other word starts with the removed word,
+     * as DictionaryTree.remove() does.
+     *
+     * @param word the word to delete from this dictionary
+     * @return whether or not the removed word was a leaf of this dictionary
+     */
+    boolean remove(String word) {
+        Node node = root;
+        int length = 0;
+        path[length++] = node;
+        int depth = 0;
+        while (depth < word.length()) {
+            int index = node.indexOf(word.charAt(depth));
+            if (index < 0) {
+                return false;
+            }
+            node = node.children[index];
+            if (node.end > word.length() || !word.regionMatches(depth, node.source, depth, node.end - depth)) {
+                return false;
+            }
+            depth = node.end;
+            if (length == path.length) {
+                path = Arrays.copyOf(path, 2 * length);
+            }
+            path[length++] = node;
+        }
+        if (node.word == null) {
+            return false;
+        }
+
+        Node removed = node;
+        boolean leaf = removed.children.length == 0;
+        removed.word = null;
+        if (removed != root) {
+            Node parent = path[length - 2];
+            if (leaf) {
+                parent.removeChild(parent.indexOf(removed.source.charAt(removed.start)));
+                --length;
+                if (parent != root && parent.word == null && parent.children.length == 1) {
+                    splice(path[length - 2], parent);
+                    --length;
+                }
+            }
+            else if (removed.children.length == 1) {
+                splice(parent, removed);
+            }
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            uncacheWord(path[i], removed);
+        }
+        return leaf;
+    }
+
+    /**
+     * Helper method for remove()
+     * Replaces a node with neither a word nor
+     * a second child by its only child, whose
+     * edge takes over the node's edge
+     *
+     * @param parent The parent of the node to be replaced
+     * @param node The node to be replaced
+     */
+    private static void splice(Node parent, Node node) {
+        Node child = node.children[0];
+        child.start = node.start;
+        parent.children[parent.indexOf(node.source.charAt(node.start))] = child;
+    }
+
+    /**
+     * Places an inserted or re-ranked word into the given node's cache
+     * of most popular descendant words, as DictionaryTree does.
+     *
+     * @param tree The node whose cache is updated
+     * @param node The end-of-word node that has changed
+     */
+    private static void cacheWord(Node tree, Node node) {
+        Node[] topWords = tree.topWords;
+        int old = indexOf(topWords, node);
+        boolean wasFull = old >= 0 && topWords.length == CACHE_SIZE;
+        if (old >= 0) {
+            topWords = without(topWords, old);
+        }
+        int index = Arrays.binarySearch(topWords, node, RANKING);
+        index = index < 0 ? -(index + 1) : index;
+        if (wasFull && index == topWords.length) {
+            tree.topWords = topWords;
+            rebuildCache(tree);
+        }
+        else if (index < CACHE_SIZE) {
+            int size = Math.min(topWords.length + 1, CACHE_SIZE);
+            Node[] cached = new Node[size];
+            System.arraycopy(topWords, 0, cached, 0, index);
+            cached[index] = node;
+            System.arraycopy(topWords, index, cached, index + 1, size - index - 1);
+            tree.topWords = cached;
+        }
+        else {
+            tree.topWords = topWords;
+        }
+    }
+
+    /**
+     * Removes a deleted word from the given node's cache, rebuilding the
+     * cache from the node's children if another word may need to take
+     * its place.
+     *
+     * @param tree The node whose cache is updated
+     * @param node The end-of-word node that has been removed
+     */
+    private static void uncacheWord(Node tree, Node node) {
+        int index = indexOf(tree.topWords, node);
+        if (index >= 0) {
+            boolean wasFull = tree.topWords.length == CACHE_SIZE;
+            tree.topWords = without(tree.topWords, index);
+            if (wasFull) {
+                rebuildCache(tree);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the given node's cache of most popular descendant words by
+     * merging its own word with the caches of its children
+     *
+     * @param tree The node whose cache is rebuilt
+     */
+    private static void rebuildCache(Node tree) {
+        ArrayList<Node> candidates = new ArrayList<>();
+        if (tree.word != null) {
+            candidates.add(tree);
+        }
+        for (Node child : tree.children) {
+            candidates.addAll(Arrays.asList(child.topWords));
+        }
+        candidates.sort(RANKING);
+        tree.topWords = candidates.subList(0, Math.min(CACHE_SIZE, candidates.size())).toArray(NO_NODES);
+    }
+
+    private static int indexOf(Node[] nodes, Node node) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Node[] without(Node[] nodes, int index) {
+        Node[] copy = new Node[nodes.length - 1];
+        System.arraycopy(nodes, 0, copy, 0, index);
+        System.arraycopy(nodes, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this tree; false otherwise
+     */
+    boolean contains(String word) {
+        Node node = find(word);
+        return node != null && node.end == word.length() && node.word != null;
+    }
+
+    /**
+     * Helper method for contains() and predict()
+     * Walks down the tree one edge at a time, comparing
+     * the prefix with each edge's label
+     *
+     * @param prefix The prefix to look up
+     * @return The node at or just below the end of the prefix, whose
+     * words all start with the prefix, or null if no word starts with it
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length()) {
+            int index = node.indexOf(prefix.charAt(depth));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+            int length = Math.min(node.end, prefix.length()) - depth;
+            if (!prefix.regionMatches(depth, node.source, depth, length)) {
+                return null;
+            }
+            depth += length;
+        }
+        return node;
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        Node node = find(prefix);
+        if (node != null && node.topWords.length > 0) {
+            return Optional.of(node.topWords[0].word);
+        }
+        else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     * Requests for more words than the cache holds walk the subtree keeping
+     * the best n words seen so far in a heap, as DictionaryTree does.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        ArrayList<String> words = new ArrayList<>();
+        Node start = find(prefix);
+        if (start == null) {
+            return words;
+        }
+        if (n <= CACHE_SIZE) {
+            for (int i = 0; i < n && i < start.topWords.length; i++) {
+                words.add(start.topWords[i].word);
+            }
+            return words;
+        }
+
+        PriorityQueue<Node> best = new PriorityQueue<>(RANKING.reversed());
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(start);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.word != null) {
+                if (best.size() < n) {
+                    best.add(node);
+                }
+                else if (RANKING.compare(node, best.peek()) < 0) {
+                    best.poll();
+                    best.add(node);
+                }
+            }
+            for (Node child : node.children) {
+                if (best.size() < n || RANKING.compare(child.topWords[0], best.peek()) < 0) {
+                    toVisit.push(child);
+                }
+            }
+        }
+        while (!best.isEmpty()) {
+            words.add(best.poll().word);
+        }
+        Collections.reverse(words);
+        return words;
+    }
+
+    /**
+     * @return all words stored in this tree as a list, in the same order
+     * as DictionaryTree.allWords()
+     */
+    List<String> allWords() {
+        List<String> words = new ArrayList<>();
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.word != null) {
+                words.add(node.word);
+            }
+            for (int i = node.children.length - 1; i >= 0; i--) {
+                toVisit.push(node.children[i]);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the number of nodes in this tree, counting the root
+     */
+    int numNodes() {
+        int count = 0;
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            ++count;
+            for (Node child : node.children) {
+                toVisit.push(child);
+            }
+        }
+        return count;
+    }
+
+}
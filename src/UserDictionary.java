@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * One user's view of a dictionary shared by many users: the shared
+ * dictionary, plus the words this user has inserted, removed or given
+ * a different popularity.
+ *
+ * Only the user's own changes are stored, in a sorted map from each
+ * changed word to its popularity for this user, or to null if the user
+ * removed it. A changed word shadows the shared dictionary's word of the
+ * same name, so a user profile costs a map entry per changed word rather
+ * than a copy of the whole dictionary.
+ *
+ * Predictions merge the two on the fly. The shared dictionary is asked
+ * for as many more words as this user has removed or re-ranked of its
+ * words starting with the prefix, which is enough to make up for the
+ * shadowed ones, and the user's own words are ranked in among them. Words
+ * only this user has shadow nothing, so they never make the shared
+ * dictionary look further. The shared dictionary must not be changed
+ * while user dictionaries are layered over it.
+ */
+public class UserDictionary {
+
+    /**
+     * A word which may be predicted, from either layer, ranked as
+     * DictionaryTree ranks its words
+     */
+    private static final class Candidate {
+        private static final Comparator<Candidate> RANKING =
+                Comparator.comparingDouble((Candidate candidate) -> candidate.rank)
+                        .thenComparingInt(candidate -> candidate.popularity)
+                        .thenComparing(candidate -> candidate.word);
+
+        private final String word;
+        private final int popularity;
+        private final double rank;
+
+        private Candidate(String word, int popularity, double rank) {
+            this.word = word;
+            this.popularity = popularity;
+            this.rank = rank;
+        }
+    }
+
+    private final DictionaryTree base;
+    private final TreeMap<String, Integer> changes = new TreeMap<>();
+    private final TreeSet<String> shadowed = new TreeSet<>();
+
+    /**
+     * @param base the dictionary shared by every user, which must not be
+     * changed while this user dictionary is in use
+     */
+    UserDictionary(DictionaryTree base) {
+        this.base = base;
+    }
+
+    /**
+     * Inserts the given word into this user's dictionary, with a popularity
+     * one lower than that of the previously inserted word.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        insert(word, DictionaryTree.nextPopularity());
+    }
+
+    /**
+     * Inserts the given word into this user's dictionary with the given
+     * popularity. If the word already exists, the popularity will be
+     * overriden by the given value for this user only.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        changes.put(word, popularity);
+        if (base.contains(word)) {
+            shadowed.add(word);
+        }
+    }
+
+    /**
+     * Removes the given word from this user's dictionary. A word of the
+     * shared dictionary stays hidden from this user, while a word only this
+     * user inserted is forgotten altogether.
+     *
+     * @param word the word to delete from this user's dictionary
+     * @return true if the word was in this user's dictionary; false otherwise
+     */
+    boolean remove(String word) {
+        boolean present = contains(word);
+        if (base.contains(word)) {
+            changes.put(word, null);
+            shadowed.add(word);
+        }
+        else {
+            changes.remove(word);
+        }
+        return present;
+    }
+
+    /**
+     * Determines whether or not the specified word is in this user's dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this user's dictionary; false otherwise
+     */
+    boolean contains(String word) {
+        if (changes.containsKey(word)) {
+            return changes.get(word) != null;
+        }
+        return base.contains(word);
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return the most popular word that starts with the given prefix, or
+     * an empty optional if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        List<String> words = predict(prefix, 1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix,
+     * from the shared dictionary as this user has changed it.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        ArrayList<Candidate> own = new ArrayList<>();
+        int numShadowed = 0;
+        for (Map.Entry<String, Integer> change : changes.tailMap(prefix, true).entrySet()) {
+            if (!change.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (shadowed.contains(change.getKey())) {
+                ++numShadowed;
+            }
+            if (change.getValue() != null) {
+                own.add(new Candidate(change.getKey(), change.getValue(), change.getValue()));
+            }
+        }
+        own.sort(Candidate.RANKING);
+
+        List<String> words = new ArrayList<>();
+        int next = 0;
+        for (DictionaryTree node : base.predictNodes(prefix, (int) Math.min(Integer.MAX_VALUE, (long) n + numShadowed))) {
+            if (words.size() == n) {
+                break;
+            }
+            if (shadowed.contains(node.word())) {
+                continue;
+            }
+            Candidate shared = new Candidate(node.word(), node.popularity(), node.rank());
+            while (next < own.size() && words.size() < n && Candidate.RANKING.compare(own.get(next), shared) < 0) {
+                words.add(own.get(next++).word);
+            }
+            if (words.size() < n) {
+                words.add(shared.word);
+            }
+        }
+        while (next < own.size() && words.size() < n) {
+            words.add(own.get(next++).word);
+        }
+        return words;
+    }
+
+    /**
+     * @return the number of words this user has inserted, removed or
+     * given a different popularity
+     */
+    int numChanges() {
+        return changes.size();
+    }
+
+}
@@ -0,0 +1,619 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * A dictionary whose edges are labelled with the bytes of the words'
+ * UTF-8 encodings rather than with chars, for vocabularies which are
+ * mostly not ASCII.
+ *
+ * A node has at most 256 children. Up to DENSE_CHILDREN of them are kept
+ * in a sparse table, an array of their labels sorted so they are listed
+ * in order and a parallel array of the children, and beyond that in a
+ * dense table of 256 slots indexed by the label itself. A character
+ * outside the Basic Multilingual Plane is one 4-byte path, where a char
+ * trie splits it into a high and a low surrogate. An unpaired surrogate
+ * is encoded on its own in 3 bytes, as WTF-8 does, so every String can be
+ * stored and nothing is ever replaced.
+ *
+ * Only the nodes which end a whole character cache their most popular
+ * words, as no prefix ends inside a character. The one exception is a
+ * prefix which ends with the high half of a surrogate pair, which matches
+ * both the 4-byte characters starting with it and the words in which it
+ * is unpaired. A high surrogate fixes the first two bytes of a 4-byte
+ * character and the top bits of the third, so the third byte's nodes
+ * cache their words too, and predicting such a prefix merges the caches
+ * of at most 16 of them and of the unpaired surrogate's node.
+ *
+ * Words are listed in code point order, which is the order of their
+ * UTF-8 bytes. Like DictionaryTree, it may be read from many threads at
+ * once, as lookups encode the words they walk as they go, but it is not
+ * safe to change while it is being read or from more than one thread.
+ */
+public class Utf8DictionaryTree {
+
+    /**
+     * The number of most popular descendant words cached at every node
+     * which ends a character, or is the third byte of a 4-byte one
+     */
+    private static final int CACHE_SIZE = 10;
+
+    /**
+     * The largest number of children kept in a sparse table
+     */
+    private static final int DENSE_CHILDREN = 16;
+
+    private static final byte[] NO_LABELS = new byte[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    /**
+     * Orders end-of-word nodes from most to least popular (lower popularity
+     * first), breaking ties alphabetically so predictions are deterministic
+     */
+    private static final Comparator<Node> RANKING =
+            Comparator.comparingInt((Node node) -> node.popularity).thenComparing(node -> node.word);
+
+    /**
+     * A node, with its children in a sparse table while labels is not null
+     * and in a dense table of 256 slots once it is.
+     */
+    private static final class Node {
+        private byte[] labels = NO_LABELS;
+        private Node[] children = NO_NODES;
+        private int numChildren;
+        private String word;
+        private int popularity;
+        private Node[] topWords;
+
+        private Node(boolean cachesWords) {
+            this.topWords = cachesWords ? NO_NODES : null;
+        }
+
+        private Node child(byte label) {
+            if (labels == null) {
+                return children[label & 0xFF];
+            }
+            for (int i = 0; i < numChildren; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(byte label, Node child) {
+            if (labels != null && numChildren == DENSE_CHILDREN) {
+                Node[] dense = new Node[256];
+                for (int i = 0; i < numChildren; i++) {
+                    dense[labels[i] & 0xFF] = children[i];
+                }
+                labels = null;
+                children = dense;
+            }
+            if (labels == null) {
+                children[label & 0xFF] = child;
+            }
+            else {
+                int index = 0;
+                while (index < numChildren && (labels[index] & 0xFF) < (label & 0xFF)) {
+                    ++index;
+                }
+                byte[] newLabels = new byte[numChildren + 1];
+                Node[] newChildren = new Node[numChildren + 1];
+                System.arraycopy(labels, 0, newLabels, 0, index);
+                System.arraycopy(labels, index, newLabels, index + 1, numChildren - index);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(children, index, newChildren, index + 1, numChildren - index);
+                newLabels[index] = label;
+                newChildren[index] = child;
+                labels = newLabels;
+                children = newChildren;
+            }
+            ++numChildren;
+        }
+
+        private void removeChild(byte label) {
+            if (labels == null) {
+                children[label & 0xFF] = null;
+            }
+            else {
+                int index = 0;
+                while (labels[index] != label) {
+                    ++index;
+                }
+                byte[] newLabels = new byte[numChildren - 1];
+                Node[] newChildren = new Node[numChildren - 1];
+                System.arraycopy(labels, 0, newLabels, 0, index);
+                System.arraycopy(labels, index + 1, newLabels, index, newLabels.length - index);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+                labels = newLabels.length == 0 ? NO_LABELS : newLabels;
+                children = newChildren.length == 0 ? NO_NODES : newChildren;
+            }
+            --numChildren;
+        }
+    }
+
+    private final Node root = new Node(true);
+    private int overallPopularity = 1;
+    private int numWords;
+    private byte[] bytes = new byte[64];
+    private Node[] path = new Node[64];
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists, nothing will change.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        insert(word, overallPopularity);
+        ++overallPopularity;
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists, the popularity will be overriden by the given value.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        int length = encode(word, word.length());
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < length; i++) {
+            Node child = node.child(bytes[i]);
+            if (child == null) {
+                child = new Node(i + 1 == length || (bytes[i + 1] & 0xC0) != 0x80
+                        || i >= 2 && (bytes[i - 2] & 0xF8) == 0xF0);
+                node.addChild(bytes[i], child);
+            }
+            node = child;
+            path[i + 1] = node;
+        }
+        if (node.word == null) {
+            node.word = word;
+            ++numWords;
+        }
+        node.popularity = popularity;
+        for (int i = length; i >= 0; i--) {
+            if (path[i].topWords != null) {
+                cacheWord(path[i], node);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified word from this dictionary.
+     * Returns true if no other word starts with the removed word,
+     * as DictionaryTree.remove() does.
+     *
+     * @param word the word to delete from this dictionary
+     * @return whether or not the removed word was a leaf of this dictionary
+     */
+    boolean remove(String word) {
+        int length = encode(word, word.length());
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.child(bytes[i]);
+            path[i + 1] = node;
+        }
+        if (node == null || node.word == null) {
+            return false;
+        }
+
+        Node removed = node;
+        boolean leaf = removed.numChildren == 0;
+        removed.word = null;
+        --numWords;
+        int depth = length;
+        while (depth > 0 && path[depth].numChildren == 0 && path[depth].word == null) {
+            path[depth - 1].removeChild(bytes[depth - 1]);
+            --depth;
+        }
+        for (int i = depth; i >= 0; i--) {
+            if (path[i].topWords != null) {
+                uncacheWord(path[i], removed);
+            }
+        }
+        if (leaf && !word.isEmpty() && Character.isHighSurrogate(word.charAt(word.length() - 1))) {
+            // the characters this surrogate starts a pair of are on another path
+            leaf = findStarts(word).isEmpty();
+        }
+        return leaf;
+    }
+
+    /**
+     * Helper method for insert() and remove()
+     * Encodes the first length chars of the word into the
+     * byte buffer as UTF-8, growing the buffer and the path
+     * if needed. A surrogate pair becomes one 4-byte character
+     * and an unpaired surrogate a 3-byte one
+     *
+     * @param word The word to encode
+     * @param length The number of chars of the word to encode
+     * @return The number of bytes written
+     */
+    private int encode(String word, int length) {
+        if (bytes.length < 3 * length) {
+            bytes = new byte[Math.max(3 * length, 2 * bytes.length)];
+            path = new Node[bytes.length + 1];
+        }
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = word.charAt(i);
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                bytes[count++] = (byte) (0xC0 | c >> 6);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(word.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, word.charAt(++i));
+                bytes[count++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint & 0x3F);
+            }
+            else {
+                bytes[count++] = (byte) (0xE0 | c >> 12);
+                bytes[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Places an inserted or re-ranked word into the given node's cache
+     * of most popular descendant words, as DictionaryTree does.
+     *
+     * @param tree The node whose cache is updated
+     * @param node The end-of-word node that has changed
+     */
+    private static void cacheWord(Node tree, Node node) {
+        Node[] topWords = tree.topWords;
+        int old = indexOf(topWords, node);
+        boolean wasFull = old >= 0 && topWords.length == CACHE_SIZE;
+        if (old >= 0) {
+            topWords = without(topWords, old);
+        }
+        int index = Arrays.binarySearch(topWords, node, RANKING);
+        index = index < 0 ? -(index + 1) : index;
+        if (wasFull && index == topWords.length) {
+            tree.topWords = topWords;
+            rebuildCache(tree);
+        }
+        else if (index < CACHE_SIZE) {
+            int size = Math.min(topWords.length + 1, CACHE_SIZE);
+            Node[] cached = new Node[size];
+            System.arraycopy(topWords, 0, cached, 0, index);
+            cached[index] = node;
+            System.arraycopy(topWords, index, cached, index + 1, size - index - 1);
+            tree.topWords = cached;
+        }
+        else {
+            tree.topWords = topWords;
+        }
+    }
+
+    /**
+     * Removes a deleted word from the given node's cache, rebuilding the
+     * cache from below if another word may need to take its place.
+     *
+     * @param tree The node whose cache is updated
+     * @param node The end-of-word node that has been removed
+     */
+    private static void uncacheWord(Node tree, Node node) {
+        int index = indexOf(tree.topWords, node);
+        if (index >= 0) {
+            boolean wasFull = tree.topWords.length == CACHE_SIZE;
+            tree.topWords = without(tree.topWords, index);
+            if (wasFull) {
+                rebuildCache(tree);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the given node's cache of most popular descendant words by
+     * merging its own word with the caches of the nearest nodes below it
+     * which have one, looking through the nodes inside a character.
+     *
+     * @param tree The node whose cache is rebuilt
+     */
+    private static void rebuildCache(Node tree) {
+        ArrayList<Node> candidates = new ArrayList<>();
+        if (tree.word != null) {
+            candidates.add(tree);
+        }
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        pushChildren(toVisit, tree);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.topWords != null) {
+                candidates.addAll(Arrays.asList(node.topWords));
+            }
+            else {
+                pushChildren(toVisit, node);
+            }
+        }
+        candidates.sort(RANKING);
+        tree.topWords = candidates.subList(0, Math.min(CACHE_SIZE, candidates.size())).toArray(NO_NODES);
+    }
+
+    /**
+     * Pushes the children of a node in reverse order of their labels, so
+     * that they are popped in order.
+     */
+    private static void pushChildren(ArrayDeque<Node> toVisit, Node node) {
+        for (int i = node.children.length - 1; i >= 0; i--) {
+            if (node.children[i] != null) {
+                toVisit.push(node.children[i]);
+            }
+        }
+    }
+
+    private static int indexOf(Node[] nodes, Node node) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Node[] without(Node[] nodes, int index) {
+        Node[] copy = new Node[nodes.length - 1];
+        System.arraycopy(nodes, 0, copy, 0, index);
+        System.arraycopy(nodes, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    /**
+     * Helper method for contains() and predict()
+     * Walks down the tree along the UTF-8 encoding
+     * of the first length chars of the word, which
+     * is worked out one char at a time as encode()
+     * does, so nothing is written to the buffers
+     * insert() and remove() use
+     *
+     * @param word The word to follow
+     * @param length The number of chars of the word to follow
+     * @return The node at the end of the chars, or null if there is none
+     */
+    private Node find(String word, int length) {
+        Node node = root;
+        for (int i = 0; i < length && node != null; i++) {
+            char c = word.charAt(i);
+            if (c < 0x80) {
+                node = node.child((byte) c);
+            }
+            else if (c < 0x800) {
+                node = step(node.child((byte) (0xC0 | c >> 6)), 0x80 | c & 0x3F);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(word.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, word.charAt(++i));
+                node = step(node.child((byte) (0xF0 | codePoint >> 18)), 0x80 | codePoint >> 12 & 0x3F);
+                node = step(step(node, 0x80 | codePoint >> 6 & 0x3F), 0x80 | codePoint & 0x3F);
+            }
+            else {
+                node = step(step(node.child((byte) (0xE0 | c >> 12)), 0x80 | c >> 6 & 0x3F), 0x80 | c & 0x3F);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return the child of the node with the given label, or null if
+     * there is no such node
+     */
+    private static Node step(Node node, int label) {
+        return node == null ? null : node.child((byte) label);
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this tree; false otherwise
+     */
+    boolean contains(String word) {
+        Node node = find(word, word.length());
+        return node != null && node.word != null;
+    }
+
+    /**
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        List<String> words = predict(prefix, 1);
+        return words.isEmpty() ? Optional.empty() : Optional.of(words.get(0));
+    }
+
+    /**
+     * Predicts the (at most) n most popular words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     * Requests for more words than the cache holds walk the subtrees keeping
+     * the best n words seen so far in a heap, as DictionaryTree does; a prefix
+     * ending with a high surrogate merges the caches of its start nodes the
+     * same way.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the maximum number of words to predict
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        ArrayList<String> words = new ArrayList<>();
+        List<Node> starts = findStarts(prefix);
+        if (starts.size() == 1 && starts.get(0).topWords != null && n <= CACHE_SIZE) {
+            Node[] topWords = starts.get(0).topWords;
+            for (int i = 0; i < n && i < topWords.length; i++) {
+                words.add(topWords[i].word);
+            }
+            return words;
+        }
+        if (n <= 0) {
+            return words;
+        }
+
+        PriorityQueue<Node> best = new PriorityQueue<>(RANKING.reversed());
+        ArrayDeque<Node> toVisit = new ArrayDeque<>(starts);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.topWords != null && n <= CACHE_SIZE) {
+                for (Node top : node.topWords) {
+                    if (best.size() < n) {
+                        best.add(top);
+                    }
+                    else if (RANKING.compare(top, best.peek()) < 0) {
+                        best.poll();
+                        best.add(top);
+                    }
+                    else {
+                        break;
+                    }
+                }
+                continue;
+            }
+            if (node.word != null) {
+                if (best.size() < n) {
+                    best.add(node);
+                }
+                else if (RANKING.compare(node, best.peek()) < 0) {
+                    best.poll();
+                    best.add(node);
+                }
+            }
+            for (Node child : node.children) {
+                if (child != null && (best.size() < n || child.topWords == null
+                        || RANKING.compare(child.topWords[0], best.peek()) < 0)) {
+                    toVisit.push(child);
+                }
+            }
+        }
+        while (!best.isEmpty()) {
+            words.add(best.poll().word);
+        }
+        Collections.reverse(words);
+        return words;
+    }
+
+    /**
+     * Helper method for predict()
+     * Finds the nodes below which are all the words
+     * starting with the prefix. That is the node at the
+     * end of the prefix, unless the prefix ends with the
+     * high half of a surrogate pair, when it is the node
+     * of that surrogate unpaired along with the nodes of
+     * the four-byte characters starting with it, which
+     * share their first two bytes and the top two bits of
+     * the third
+     *
+     * @param prefix The prefix to look up
+     * @return The nodes whose words start with the prefix
+     */
+    private List<Node> findStarts(String prefix) {
+        List<Node> starts = new ArrayList<>();
+        int last = prefix.length() - 1;
+        if (last < 0 || !Character.isHighSurrogate(prefix.charAt(last))) {
+            Node node = find(prefix, prefix.length());
+            if (node != null && node.topWords.length > 0) {
+                starts.add(node);
+            }
+            return starts;
+        }
+
+        Node unpaired = find(prefix, prefix.length());
+        if (unpaired != null) {
+            starts.add(unpaired);
+        }
+        int first = Character.toCodePoint(prefix.charAt(last), Character.MIN_LOW_SURROGATE);
+        Node node = step(step(find(prefix, last), 0xF0 | first >> 18), 0x80 | first >> 12 & 0x3F);
+        if (node != null) {
+            int from = 0x80 | first >> 6 & 0x3F;
+            for (int label = from; label < from + 16; label++) {
+                Node child = node.child((byte) label);
+                if (child != null) {
+                    starts.add(child);
+                }
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * @return the word with the most characters in this tree, counting a
+     * surrogate pair as one character, or "" if there are no words; of
+     * several such words, the first in code point order
+     */
+    String longestWord() {
+        String longest = "";
+        int longestLength = 0;
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.word != null) {
+                int length = node.word.codePointCount(0, node.word.length());
+                if (length > longestLength) {
+                    longest = node.word;
+                    longestLength = length;
+                }
+            }
+            pushChildren(toVisit, node);
+        }
+        return longest;
+    }
+
+    /**
+     * @return all words stored in this tree as a list, in code point order
+     */
+    List<String> allWords() {
+        List<String> words = new ArrayList<>();
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (node.word != null) {
+                words.add(node.word);
+            }
+            pushChildren(toVisit, node);
+        }
+        return words;
+    }
+
+    /**
+     * @return the number of words in this dictionary; unlike
+     * DictionaryTree.size(), this does not count nodes
+     */
+    int numWords() {
+        return numWords;
+    }
+
+    /**
+     * @return the number of nodes in this tree, counting the root
+     */
+    int numNodes() {
+        int count = 0;
+        ArrayDeque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            ++count;
+            pushChildren(toVisit, node);
+        }
+        return count;
+    }
+
+}
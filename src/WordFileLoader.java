@@ -0,0 +1,245 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads a list of words into a dictionary straight from a memory-mapped
+ * file, decoding the UTF-8 bytes of each line into a reusable character
+ * buffer that is handed to DictionaryTree.insert() without ever making
+ * a String for a word that is already in the dictionary.
+ *
+ * Each line holds a word, optionally followed by a tab and the number of
+ * times the word occurs in some corpus. A word without a count is
+ * inserted as insert(word) would, so its popularity comes from its
+ * position in the file. A word with a count is inserted with a
+ * popularity of minus its count, so more frequent words rank first and
+ * every counted word ranks above every uncounted one.
+ *
+ * Lines end with "\n", "\r" or "\r\n", as for BufferedReader.readLine(),
+ * and malformed UTF-8 is decoded as U+FFFD. Files larger than a single
+ * mapping can hold are mapped one window at a time, each window ending
+ * after the last complete line it contains.
+ */
+public class WordFileLoader {
+
+    /**
+     * The largest number of bytes mapped at once
+     */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final DictionaryTree tree;
+    private char[] chars = new char[64];
+    private int length;
+    private long count;
+    private long lineNumber;
+
+    private WordFileLoader(DictionaryTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Loads the words in the given file into a new dictionary.
+     *
+     * @param f the file from which the words will be loaded
+     * @return the dictionary with the words loaded from the given file
+     * @throws IOException if there was a problem opening/reading from the file,
+     * or if a line has a count that is not a whole number
+     */
+    static DictionaryTree load(File f) throws IOException {
+        DictionaryTree tree = new DictionaryTree();
+        load(f, tree, WINDOW_SIZE);
+        return tree;
+    }
+
+    /**
+     * Loads the words in the given file into the given dictionary,
+     * mapping at most windowSize bytes of the file at once.
+     *
+     * @param f the file from which the words will be loaded
+     * @param tree the dictionary the words are inserted into
+     * @param windowSize the largest number of bytes to map at once
+     * @throws IOException if there was a problem opening/reading from the file,
+     * if a line has a count that is not a whole number, or if a line is
+     * longer than windowSize bytes
+     */
+    static void load(File f, DictionaryTree tree, int windowSize) throws IOException {
+        WordFileLoader loader = new WordFileLoader(tree);
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+            while (position < fileSize) {
+                int mapped = (int) Math.min(windowSize, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+                boolean last = position + mapped == fileSize;
+                int consumed = loader.loadLines(buffer, mapped, position == 0, last);
+                if (consumed == 0) {
+                    throw new IOException("line " + (loader.lineNumber + 1) + " is longer than "
+                            + windowSize + " bytes");
+                }
+                position += consumed;
+            }
+        }
+    }
+
+    /**
+     * Helper method for load()
+     * Inserts every complete line in the mapped window. A line
+     * cut off by the end of the window is left for the next
+     * window, unless this is the end of the file
+     *
+     * @param buffer The mapped window of the file
+     * @param limit The number of bytes in the window
+     * @param first Whether the window starts at the beginning of the file
+     * @param last Whether the window reaches the end of the file
+     * @return The number of bytes consumed from the start of the window
+     * @throws IOException if a line has a count that is not a whole number
+     */
+    private int loadLines(MappedByteBuffer buffer, int limit, boolean first, boolean last) throws IOException {
+        int start = 0;
+        if (first && limit >= 3 && (buffer.get(0) & 0xFF) == 0xEF
+                && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        int lineStart = start;
+        for (int i = start; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && i + 1 == limit && !last) {
+                    // the "\n" of a "\r\n" may be in the next window
+                    return lineStart;
+                }
+                loadLine(buffer, lineStart, i);
+                if (b == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n') {
+                    ++i;
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (last && lineStart < limit) {
+            loadLine(buffer, lineStart, limit);
+            lineStart = limit;
+        }
+        return last ? limit : lineStart;
+    }
+
+    /**
+     * Helper method for loadLines()
+     * Decodes one line into the character buffer and
+     * inserts the word, with its count if it has one
+     *
+     * @param buffer The mapped window of the file
+     * @param from The index of the first byte of the line
+     * @param to The index just past the last byte of the line
+     * @throws IOException if the line has a count that is not a whole number
+     */
+    private void loadLine(MappedByteBuffer buffer, int from, int to) throws IOException {
+        ++lineNumber;
+        int tab = from;
+        while (tab < to && buffer.get(tab) != '\t') {
+            ++tab;
+        }
+        decode(buffer, from, tab);
+        if (tab < to) {
+            parseCount(buffer, tab + 1, to);
+            tree.insert(chars, 0, length, (int) -count);
+        }
+        else {
+            tree.insert(chars, 0, length);
+        }
+    }
+
+    /**
+     * Helper method for loadLine()
+     * Decodes UTF-8 bytes into the character buffer,
+     * growing it if needed. Characters outside the
+     * Basic Multilingual Plane become surrogate pairs
+     *
+     * @param buffer The mapped window of the file
+     * @param from The index of the first byte to decode
+     * @param to The index just past the last byte to decode
+     */
+    private void decode(MappedByteBuffer buffer, int from, int to) {
+        if (chars.length < to - from) {
+            chars = new char[Math.max(to - from, 2 * chars.length)];
+        }
+        length = 0;
+        int i = from;
+        while (i < to) {
+            int b = buffer.get(i++) & 0xFF;
+            int extra;
+            int codePoint;
+            if (b < 0x80) {
+                chars[length++] = (char) b;
+                continue;
+            }
+            else if (b >= 0xC2 && b < 0xE0) {
+                extra = 1;
+                codePoint = b & 0x1F;
+            }
+            else if (b >= 0xE0 && b < 0xF0) {
+                extra = 2;
+                codePoint = b & 0x0F;
+            }
+            else if (b >= 0xF0 && b < 0xF5) {
+                extra = 3;
+                codePoint = b & 0x07;
+            }
+            else {
+                chars[length++] = REPLACEMENT;
+                continue;
+            }
+            int end = i + extra;
+            while (i < to && i < end && (buffer.get(i) & 0xC0) == 0x80) {
+                codePoint = (codePoint << 6) | (buffer.get(i++) & 0x3F);
+            }
+            boolean overlong = extra == 2 ? codePoint < 0x800 : extra == 3 && codePoint < 0x10000;
+            if (i < end || overlong || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                chars[length++] = REPLACEMENT;
+            }
+            else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[length++] = Character.highSurrogate(codePoint);
+                chars[length++] = Character.lowSurrogate(codePoint);
+            }
+            else {
+                chars[length++] = (char) codePoint;
+            }
+        }
+    }
+
+    /**
+     * Helper method for loadLine()
+     * Parses the count after the tab of a line,
+     * ignoring spaces around it. Counts too large
+     * for an int are capped at Integer.MAX_VALUE
+     *
+     * @param buffer The mapped window of the file
+     * @param from The index of the first byte after the tab
+     * @param to The index just past the last byte of the line
+     * @throws IOException if the count is not a whole number
+     */
+    private void parseCount(MappedByteBuffer buffer, int from, int to) throws IOException {
+        while (from < to && buffer.get(from) == ' ') {
+            ++from;
+        }
+        while (to > from && buffer.get(to - 1) == ' ') {
+            --to;
+        }
+        if (from == to) {
+            throw new IOException("missing count on line " + lineNumber);
+        }
+        count = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("invalid count on line " + lineNumber);
+            }
+            count = Math.min(count * 10 + digit, Integer.MAX_VALUE);
+        }
+    }
+
+}
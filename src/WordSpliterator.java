@@ -0,0 +1,95 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks the words below a node of a DictionaryTree one at a time, in the
+ * same order as allWords(), without collecting them first.
+ * Splitting hands half of the subtrees still waiting to be walked to a
+ * new spliterator, opening up a subtree into its children when only one
+ * is left, so parallel streams can share out the tree between threads.
+ * The tree must not be changed while its words are being walked.
+ */
+class WordSpliterator implements Spliterator<String> {
+
+    /**
+     * Subtrees still to be walked, as DictionaryTree nodes, and single words
+     * still to be returned, as Strings, in the order they will be visited
+     */
+    private final ArrayDeque<Object> pending;
+
+    /**
+     * A guess at the number of words left, which is unknown, so it starts
+     * as large as possible and is halved at each split, letting streams
+     * stop splitting once there are enough parts for their threads
+     */
+    private long estimate;
+
+    /**
+     * @param start the node whose words are walked
+     */
+    WordSpliterator(DictionaryTree start) {
+        pending = new ArrayDeque<>();
+        pending.add(start);
+        estimate = Long.MAX_VALUE;
+    }
+
+    private WordSpliterator(ArrayDeque<Object> pending, long estimate) {
+        this.pending = pending;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        while (!pending.isEmpty()) {
+            Object next = pending.pollFirst();
+            if (next instanceof String) {
+                action.accept((String) next);
+                return true;
+            }
+            DictionaryTree tree = (DictionaryTree) next;
+            List<DictionaryTree> children = new ArrayList<>(tree.children().values());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.addFirst(children.get(i));
+            }
+            if (tree.isWord()) {
+                action.accept(tree.word());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        if (pending.size() == 1 && pending.peekFirst() instanceof DictionaryTree) {
+            DictionaryTree tree = (DictionaryTree) pending.pollFirst();
+            if (tree.isWord()) {
+                pending.add(tree.word());
+            }
+            pending.addAll(tree.children().values());
+        }
+        if (pending.size() < 2) {
+            return null;
+        }
+        ArrayDeque<Object> firstHalf = new ArrayDeque<>();
+        for (int i = pending.size() / 2; i > 0; i--) {
+            firstHalf.add(pending.pollFirst());
+        }
+        estimate >>>= 1;
+        return new WordSpliterator(firstHalf, estimate);
+    }
+
+    @Override
+    public long estimateSize() {
+        return pending.isEmpty() ? 0 : estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+
+}